@@ -0,0 +1,74 @@
+package com.crud.example.customerapi.benchmark;
+
+import com.crud.example.customerapi.security.TokenAuthentication;
+import com.crud.example.customerapi.security.TokenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthenticationBenchmark {
+
+    /*
+        Authentication of a delete request as done by SecurityConfig: HTTP
+        Basic checking the BCrypt hash of the password, against a bearer
+        token verified by its signature, or found in the verified tokens.
+    */
+
+    private DaoAuthenticationProvider basic;
+    private TokenService tokens;
+    private TokenService uncachedTokens;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        PasswordEncoder passwordEncoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+        basic = new DaoAuthenticationProvider();
+        basic.setPasswordEncoder(passwordEncoder);
+        basic.setUserDetailsService(new InMemoryUserDetailsManager(User.withUsername("admin")
+                .password(passwordEncoder.encode("password"))
+                .roles("ADMIN")
+                .build()));
+
+        byte[] secret = "benchmark-secret-of-at-least-32-characters".getBytes(StandardCharsets.UTF_8);
+        tokens = new TokenService(secret, Duration.ofHours(1), 10000);
+        uncachedTokens = new TokenService(secret, Duration.ofHours(1), 0);
+        token = tokens.issue(basicAuthentication()).getToken();
+    }
+
+    @Benchmark
+    public Authentication basicAuthentication() {
+        return basic.authenticate(new UsernamePasswordAuthenticationToken("admin", "password"));
+    }
+
+    @Benchmark
+    public TokenAuthentication tokenAuthentication() {
+        return tokens.authenticate(token);
+    }
+
+    @Benchmark
+    public TokenAuthentication uncachedTokenAuthentication() {
+        return uncachedTokens.authenticate(token);
+    }
+}
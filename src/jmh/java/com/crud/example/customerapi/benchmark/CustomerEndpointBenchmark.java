@@ -0,0 +1,159 @@
+package com.crud.example.customerapi.benchmark;
+
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=256")
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class CustomerEndpointBenchmark {
+
+    /*
+        HTTP load on an application already running at baseUrl, one
+        keep-alive connection per benchmark thread, to compare the servlet
+        and the reactive runtimes against the same database (see the
+        README). Customers are created through the API until there are
+        CUSTOMERS of them. Responses other than 200, such as the 503 of
+        the servlet load shedding, are counted in each iteration and
+        reported as failures next to the throughput.
+        Left out of the default run, as it needs the application up.
+    */
+
+    private static final int CUSTOMERS = 10000;
+    private static final int PAGE_SIZE = 500;
+    // CPF sequence numbers of the customers created by the benchmark
+    private static final int CPFS_START = 600000000;
+    // a stuck server fails the run instead of hanging it
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    @Param({"http://localhost:8080"})
+    public String baseUrl;
+
+    private ObjectMapper objectMapper;
+    private List<Long> ids;
+    private List<String> cpfs;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ids = new ArrayList<>(CUSTOMERS);
+        cpfs = new ArrayList<>(CUSTOMERS);
+
+        String page = "/customers?limit=" + PAGE_SIZE;
+        while (page != null && ids.size() < CUSTOMERS) {
+            HttpURLConnection connection = open(page);
+            for (JsonNode customer : objectMapper.readTree(connection.getInputStream())) {
+                ids.add(customer.get("id").asLong());
+                cpfs.add(customer.get("cpf").asText());
+            }
+            String cursor = connection.getHeaderField("X-Next-Cursor");
+            page = cursor == null ? null : "/customers?limit=" + PAGE_SIZE + "&after=" + cursor;
+        }
+
+        for (int sequence = CPFS_START; ids.size() < CUSTOMERS; sequence++) {
+            String cpf = CustomerFixtures.cpf(sequence);
+            HttpURLConnection connection = open("/customers");
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream()) {
+                objectMapper.writeValue(body, CustomerFixtures.customer(cpf));
+            }
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_CREATED) {
+                ids.add(objectMapper.readTree(connection.getInputStream()).get("id").asLong());
+                cpfs.add(cpf);
+            } else {
+                // CPFs created by a previous run answer 409 and are listed by the pages already
+                drain(connection);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failures = 0;
+        }
+    }
+
+    @Benchmark
+    public int findById(Responses responses) throws IOException {
+        return get("/customers/" + ids.get(ThreadLocalRandom.current().nextInt(ids.size())), responses);
+    }
+
+    @Benchmark
+    public int findByCpf(Responses responses) throws IOException {
+        return get("/customers?cpf=" + cpfs.get(ThreadLocalRandom.current().nextInt(cpfs.size())), responses);
+    }
+
+    private int get(String path, Responses responses) throws IOException {
+        HttpURLConnection connection = open(path);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            responses.failures++;
+        }
+        drain(connection);
+        return status;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    /*
+        Reads the whole response, so that the connection goes back to the
+        keep-alive cache instead of being closed.
+    */
+    private static void drain(HttpURLConnection connection) throws IOException {
+        InputStream body = connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        if (body == null) {
+            return;
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = body) {
+            while (in.read(buffer) >= 0) {
+                // discarded
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.crud.example.customerapi.benchmark;
+
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerFormatBenchmark {
+
+    /*
+        Jackson (de)serialization of a customer with its address, through
+        the dd-MM-yyyy date format and the managed/back references, as a
+        single customer and as a page of the default size, in each of the
+        formats served by the API. Payload sizes are logged on setup.
+    */
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private JavaType pageType;
+    private Customer customer;
+    private List<Customer> page;
+    private byte[] customerBytes;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        // the same builder Spring Boot configures its ObjectMapper with
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory()).build();
+        pageType = objectMapper.getTypeFactory().constructCollectionType(List.class, Customer.class);
+
+        customer = CustomerFixtures.customer(1L, CustomerFixtures.cpf(1));
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            page.add(CustomerFixtures.customer((long) i, CustomerFixtures.cpf(i)));
+        }
+
+        customerBytes = objectMapper.writeValueAsBytes(customer);
+        pageBytes = objectMapper.writeValueAsBytes(page);
+        log.info(format + ": " + customerBytes.length + " bytes per customer, " + pageBytes.length + " bytes per page.");
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws IOException {
+        return objectMapper.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public Customer deserializeCustomer() throws IOException {
+        return objectMapper.readValue(customerBytes, Customer.class);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Customer> deserializePage() throws IOException {
+        return objectMapper.readValue(pageBytes, pageType);
+    }
+
+    private JsonFactory factory() {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
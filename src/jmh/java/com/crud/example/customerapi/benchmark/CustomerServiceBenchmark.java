@@ -0,0 +1,113 @@
+package com.crud.example.customerapi.benchmark;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.cache.CpfFilter;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.crud.example.customerapi.service.CustomerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerServiceBenchmark {
+
+    /*
+        CustomerService lookups against an in-memory H2 database holding
+        CUSTOMERS customers, with the customers cache on and off. Lookups
+        pick a random stored customer, every one of them read once during
+        the setup, so with the cache on they are all hits.
+    */
+
+    private static final int CUSTOMERS = 10000;
+    private static final int CHUNK_SIZE = 500;
+    // CPF sequence numbers past the stored ones
+    private static final int UNKNOWN_CPFS_START = 500000000;
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+    private CustomerService customerService;
+    private Long[] ids;
+    private String[] cpfs;
+
+    @Setup
+    public void setUp() {
+        // command line arguments, so that they win over application.properties
+        context = new SpringApplicationBuilder(CustomerApiApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=benchmark",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.properties.hibernate.default_schema=PUBLIC",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--customer.cache.invalidation.enabled=false",
+                        "--customer.cache.enabled=" + cacheEnabled,
+                        "--logging.level.root=WARN");
+        customerService = context.getBean(CustomerService.class);
+
+        ids = new Long[CUSTOMERS];
+        cpfs = new String[CUSTOMERS];
+        List<Customer> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            cpfs[i] = CustomerFixtures.cpf(i + 1);
+            chunk.add(CustomerFixtures.customer(cpfs[i]));
+            if (chunk.size() == CHUNK_SIZE) {
+                List<Customer> saved = customerService.saveAll(chunk);
+                for (int j = 0; j < saved.size(); j++) {
+                    ids[i - CHUNK_SIZE + 1 + j] = saved.get(j).getId();
+                }
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        for (Long id : ids) {
+            customerService.findById(id);
+        }
+        // sized for the seeded customers, as the periodic rebuild would
+        context.getBean(CpfFilter.class).rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Customer> findById() {
+        return customerService.findById(ids[ThreadLocalRandom.current().nextInt(CUSTOMERS)]);
+    }
+
+    @Benchmark
+    public Optional<Customer> findByDocument() {
+        return customerService.findByDocument(cpfs[ThreadLocalRandom.current().nextInt(CUSTOMERS)]);
+    }
+
+    @Benchmark
+    public Optional<Customer> findByUnknownDocument() {
+        int sequence = UNKNOWN_CPFS_START + ThreadLocalRandom.current().nextInt(CUSTOMERS);
+        return customerService.findByDocument(CustomerFixtures.cpf(sequence));
+    }
+}
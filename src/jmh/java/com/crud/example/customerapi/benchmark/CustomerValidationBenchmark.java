@@ -0,0 +1,77 @@
+package com.crud.example.customerapi.benchmark;
+
+import com.crud.example.customerapi.model.Address;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerValidationBenchmark {
+
+    /*
+        Bean validation of a customer, cascading to its address, plus the
+        @CPF check and the address patterns on their own. Failed
+        validations are measured too, as they build the violation messages.
+    */
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Customer validCustomer;
+    private Customer invalidCustomer;
+    private Address address;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        validCustomer = CustomerFixtures.customer(1L, CustomerFixtures.cpf(1));
+        invalidCustomer = CustomerFixtures.customer(2L, "12345678900");
+        address = validCustomer.getAddress();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Customer>> validateCustomer() {
+        return validator.validate(validCustomer);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Customer>> validateCustomerWithInvalidCpf() {
+        return validator.validate(invalidCustomer);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Customer>> validateCpf() {
+        return validator.validateProperty(validCustomer, "cpf");
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Address>> validateAddress() {
+        return validator.validate(address);
+    }
+}
@@ -0,0 +1,36 @@
+package com.crud.example.customerapi.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CacheInvalidation {
+
+    /*
+        A customer changed on some node. Sent as a NOTIFY payload in the
+        form "node:id:cpf", where the CPF may be empty when it is unknown.
+    */
+
+    private static final String SEPARATOR = ":";
+
+    private String node;
+
+    private Long id;
+
+    private String cpf;
+
+    public String toPayload() {
+        return node + SEPARATOR + (id == null ? "" : id) + SEPARATOR + (cpf == null ? "" : cpf);
+    }
+
+    public static CacheInvalidation fromPayload(String payload) {
+        String[] parts = payload.split(SEPARATOR, -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid cache invalidation payload: " + payload);
+        }
+        Long id = parts[1].isEmpty() ? null : Long.valueOf(parts[1]);
+        String cpf = parts[2].isEmpty() ? null : parts[2];
+        return new CacheInvalidation(parts[0], id, cpf);
+    }
+}
@@ -0,0 +1,175 @@
+package com.crud.example.customerapi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "customer.cache.invalidation.enabled", havingValue = "true")
+@Slf4j
+public class CacheInvalidationListener implements SmartLifecycle {
+
+    /*
+        Listens to the invalidations published by the other nodes on a
+        dedicated connection, outside of the application pool, and evicts
+        the changed customers locally. Notifications sent while the
+        connection was down are lost, so every (re)connection starts by
+        clearing the cache and rebuilding the CPF filter (the first
+        connection relies on the filter built at startup instead). Other
+        components subscribe to channels of their own on the same
+        connection, before it starts, and catch up on what they missed
+        by themselves (see TokenRevocations).
+    */
+
+    private final DataSourceProperties dataSourceProperties;
+    private final CustomerCache customerCache;
+    private final CpfFilter cpfFilter;
+    private final String node;
+
+    @Value("${customer.cache.invalidation.poll-timeout-ms:1000}")
+    private int pollTimeout;
+
+    @Value("${customer.cache.invalidation.reconnect-delay-ms:5000}")
+    private long reconnectDelay;
+
+    private final Map<String, Consumer<String>> subscriptions = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    @Autowired
+    public CacheInvalidationListener(DataSourceProperties dataSourceProperties, CustomerCache customerCache,
+                                     CpfFilter cpfFilter, CacheInvalidationPublisher publisher) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.customerCache = customerCache;
+        this.cpfFilter = cpfFilter;
+        this.node = publisher.getNode();
+    }
+
+    public void subscribe(String channel, Consumer<String> consumer) {
+        subscriptions.put(channel, consumer);
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::listen, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        closeConnection();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try {
+                connect();
+                if (reconnecting) {
+                    resync();
+                }
+                reconnecting = true;
+                while (running) {
+                    PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(pollTimeout);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            Consumer<String> subscription = subscriptions.get(notification.getName());
+                            if (subscription != null) {
+                                subscription.accept(notification.getParameter());
+                            } else {
+                                apply(notification.getParameter());
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Cache invalidation listener disconnected, reconnecting in " + reconnectDelay + " ms.", e);
+                }
+            } finally {
+                closeConnection();
+            }
+            sleepBeforeReconnecting();
+        }
+    }
+
+    private void connect() throws SQLException {
+        connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CacheInvalidationPublisher.CHANNEL);
+            for (String channel : subscriptions.keySet()) {
+                statement.execute("LISTEN " + channel);
+            }
+        }
+        log.debug("Cache invalidation listener connected.");
+    }
+
+    private void resync() {
+        customerCache.clear();
+        cpfFilter.rebuild();
+    }
+
+    void apply(String payload) {
+        CacheInvalidation invalidation = CacheInvalidation.fromPayload(payload);
+        if (node.equals(invalidation.getNode())) {
+            return;
+        }
+        if (invalidation.getCpf() != null) {
+            cpfFilter.add(invalidation.getCpf());
+        }
+        if (invalidation.getId() != null) {
+            customerCache.evict(invalidation.getId());
+        }
+    }
+
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                log.debug("Failed to close the cache invalidation connection.", e);
+            }
+        }
+    }
+
+    private void sleepBeforeReconnecting() {
+        if (!running) {
+            return;
+        }
+        try {
+            Thread.sleep(reconnectDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
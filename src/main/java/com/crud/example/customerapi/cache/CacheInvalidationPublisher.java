@@ -0,0 +1,84 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.model.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Component
+public class CacheInvalidationPublisher {
+
+    /*
+        Tells the other nodes which customers changed through PostgreSQL
+        NOTIFY. It runs on the connection of the current transaction, so
+        the notifications are only delivered if the write commits.
+    */
+
+    public static final String CHANNEL = "customer_invalidation";
+
+    private final String node = UUID.randomUUID().toString();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${customer.cache.invalidation.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    public CacheInvalidationPublisher(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void publish(Long id, String cpf) {
+        publishAll(Collections.singletonList(new CacheInvalidation(node, id, cpf)));
+    }
+
+    public void publish(Collection<Customer> customers) {
+        publishAll(customers.stream()
+                .map(customer -> new CacheInvalidation(node, customer.getId(), customer.getCpf()))
+                .collect(Collectors.toList()));
+    }
+
+    /*
+        Sends the payload on a channel of another component, listened to
+        along with the invalidations (see CacheInvalidationListener).
+    */
+    public void send(String channel, String payload) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.query("select pg_notify(?, ?)", resultSet -> null, channel, payload);
+    }
+
+    private void publishAll(Collection<CacheInvalidation> invalidations) {
+        if (!enabled || invalidations.isEmpty()) {
+            return;
+        }
+
+        String[] payloads = invalidations.stream()
+                .map(CacheInvalidation::toPayload)
+                .toArray(String[]::new);
+        // a single statement whatever the number of notifications
+        jdbcTemplate.query(
+                connection -> {
+                    Array array = connection.createArrayOf("text", payloads);
+                    PreparedStatement statement = connection.prepareStatement(
+                            "select pg_notify(?, payload) from unnest(?) as payload");
+                    statement.setString(1, CHANNEL);
+                    statement.setArray(2, array);
+                    return statement;
+                },
+                resultSet -> null);
+    }
+}
@@ -0,0 +1,73 @@
+package com.crud.example.customerapi.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class CacheSnapshot {
+
+    /*
+        Binary file of the IDs of the hottest cached customers, hottest
+        first: a magic number, the format version, the count of IDs and
+        the IDs as 8 byte integers. Written to a temporary file moved over
+        the previous one, so a crash while writing leaves the previous
+        snapshot whole. A file not in this format is read as no IDs.
+    */
+
+    private static final int MAGIC = 0x43435331;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private CacheSnapshot() {
+    }
+
+    static void write(Path file, List<Long> ids) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + ids.size() * Long.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(ids.size());
+        for (Long id : ids) {
+            buffer.putLong(id);
+        }
+        buffer.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static List<Long> read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return Collections.emptyList();
+        }
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != (long) count * Long.BYTES) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(buffer.getLong());
+        }
+        return ids;
+    }
+}
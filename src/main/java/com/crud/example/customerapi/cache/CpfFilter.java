@@ -0,0 +1,121 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+@Component
+@Slf4j
+public class CpfFilter {
+
+    /*
+        In-memory membership filter over the stored CPFs, used to answer
+        lookups of unknown CPFs without going to the database. Until the
+        first build finishes every CPF might exist. Deleted CPFs are only
+        dropped by the periodic rebuild, which also resizes the filter.
+        CPFs written in a transaction are only added once it commits, so
+        that a rebuild reading the table before the commit still gets
+        them: the rebuild is then either running, and takes them in its
+        filter, or done, and they go to the new one.
+    */
+
+    private final CustomerRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${customer.cpf-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${customer.cpf-filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    private volatile CpfBloomFilter current;
+    private volatile CpfBloomFilter building;
+
+    @Autowired
+    public CpfFilter(CustomerRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean mightContain(String cpf) {
+        CpfBloomFilter filter = current;
+        return filter == null || filter.mightContain(cpf);
+    }
+
+    public void add(String cpf) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addCommitted(cpf);
+                }
+            });
+        } else {
+            addCommitted(cpf);
+        }
+    }
+
+    private void addCommitted(String cpf) {
+        /*
+            CPFs stored while a rebuild is running may be missing from its
+            snapshot. Read before current: a rebuild finishing in between
+            has already made its filter current, so the CPF is not lost.
+        */
+        CpfBloomFilter next = building;
+        CpfBloomFilter filter = current;
+        if (next != null) {
+            next.add(cpf);
+        }
+        if (filter != null && filter != next) {
+            filter.add(cpf);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("CPF filter could not be built, CPF lookups will go to the database until the next rebuild.", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${customer.cpf-filter.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${customer.cpf-filter.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        long count = repository.count();
+        // room for the CPFs stored until the next rebuild
+        CpfBloomFilter filter = new CpfBloomFilter(count + count / 4 + 1000, falsePositiveProbability);
+        building = filter;
+        try {
+            // a replica behind the primary would leave out its latest CPFs
+            PrimaryRouting.call(() -> transactionTemplate.execute(status -> {
+                try (Stream<String> cpfs = repository.streamAllCpfs()) {
+                    cpfs.forEach(filter::add);
+                }
+                return null;
+            }));
+            current = filter;
+            log.debug("CPF filter rebuilt for " + count + " customers.");
+        } finally {
+            building = null;
+        }
+    }
+}
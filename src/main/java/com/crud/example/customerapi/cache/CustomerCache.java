@@ -0,0 +1,297 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.dto.CacheStatistics;
+import com.crud.example.customerapi.model.Customer;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.crud.example.customerapi.config.CacheConfig.CUSTOMERS;
+import static com.crud.example.customerapi.config.CacheConfig.CUSTOMER_IDS_BY_CPF;
+
+@Component
+public class CustomerCache {
+
+    /*
+        Customers cached by ID, plus a CPF to ID index pointing into
+        that cache. The index is only trusted when the customer it points
+        to is cached with the same CPF, so a stale entry can cost a
+        database lookup but never returns the wrong customer. When
+        disabled nothing is cached, every lookup goes to the database.
+        With read replicas, the customers changed within the replica lag
+        window are not cached when read, as a replica may still return
+        them as they were before the change.
+
+        Every write and eviction stamps the ID and CPFs it changed, once
+        committed and before the cache itself changes. A customer read
+        from the database is only cached when no write stamped it since
+        the read started, and never over a newer version, so that a read
+        finishing after a write does not cache what was there before.
+    */
+
+    // write stamps kept, older ones are taken for as recent as the newest of them forgotten
+    private static final int WRITES_KEPT = 100000;
+
+    private final Cache customers;
+    private final Cache idsByCpf;
+    private final com.github.benmanes.caffeine.cache.Cache<Long, Boolean> recentlyChanged;
+    private final AtomicLong writeCount = new AtomicLong();
+    // stamp of the last write of each ID and CPF
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Long> writes;
+    private final AtomicLong forgottenWrites = new AtomicLong();
+
+    @Value("${customer.cache.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CustomerCache(CacheManager cacheManager,
+                         @Value("${customer.datasource.replica-urls:}") String replicaUrls,
+                         @Value("${customer.datasource.replica-lag-window:5s}") Duration replicaLagWindow) {
+        this.customers = cacheManager.getCache(CUSTOMERS);
+        this.idsByCpf = cacheManager.getCache(CUSTOMER_IDS_BY_CPF);
+        this.recentlyChanged = replicaUrls.trim().isEmpty() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(replicaLagWindow)
+                .build();
+        this.writes = Caffeine.newBuilder()
+                .maximumSize(WRITES_KEPT)
+                .writer(new CacheWriter<Object, Long>() {
+                    @Override
+                    public void write(Object key, Long stamp) {
+                    }
+
+                    // called before the stamp is gone, so that it is never missed
+                    @Override
+                    public void delete(Object key, Long stamp, RemovalCause cause) {
+                        if (stamp != null) {
+                            forgottenWrites.accumulateAndGet(stamp, Math::max);
+                        }
+                    }
+                })
+                .build();
+    }
+
+    public Customer get(Long id) {
+        if (!enabled) {
+            return null;
+        }
+        return customers.get(id, Customer.class);
+    }
+
+    /*
+        Returns the cached customers among the given IDs, looked up in a
+        single call that still counts a hit or a miss for every ID.
+    */
+    public Map<Long, Customer> getAll(Collection<Long> ids) {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Customer> cached = new HashMap<>();
+        nativeCache(customers).getAllPresent(ids)
+                .forEach((id, customer) -> cached.put((Long) id, (Customer) customer));
+        return cached;
+    }
+
+    public Customer getByCpf(String cpf) {
+        if (!enabled) {
+            return null;
+        }
+        Long id = idsByCpf.get(cpf, Long.class);
+        if (id == null) {
+            return null;
+        }
+
+        Customer customer = get(id);
+        if (customer == null || !cpf.equals(customer.getCpf())) {
+            idsByCpf.evict(cpf);
+            return null;
+        }
+        return customer;
+    }
+
+    /*
+        Stamp to pass to putLoaded, taken before reading customers from
+        the database.
+    */
+    public long loadStarting() {
+        return writeCount.get();
+    }
+
+    /*
+        Whether any of the IDs or CPFs, nulls ignored, was written or
+        evicted since the load stamp was taken.
+    */
+    public boolean writtenSince(long loadStarted, Object... keys) {
+        if (forgottenWrites.get() > loadStarted) {
+            return true;
+        }
+        for (Object key : keys) {
+            Long written = key == null ? null : writes.getIfPresent(key);
+            if (written != null && written > loadStarted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+        Caches a customer read from the database since the load stamp
+        was taken, unless it was written since, it changed within the
+        replica lag window, or a newer version is cached.
+    */
+    public void putLoaded(Customer customer, long loadStarted) {
+        if (!enabled || (recentlyChanged != null && recentlyChanged.getIfPresent(customer.getId()) != null)) {
+            return;
+        }
+        Customer[] replaced = new Customer[1];
+        boolean[] stored = new boolean[1];
+        // writes are stamped before changing the entry, so checked again while holding it
+        nativeCache(customers).asMap().compute(customer.getId(), (id, cached) -> {
+            if (writtenSince(loadStarted, id, customer.getCpf()) || isNewer((Customer) cached, customer)) {
+                return cached;
+            }
+            replaced[0] = (Customer) cached;
+            stored[0] = true;
+            return customer;
+        });
+        if (!stored[0]) {
+            return;
+        }
+        if (replaced[0] != null && !replaced[0].getCpf().equals(customer.getCpf())) {
+            nativeCache(idsByCpf).invalidate(replaced[0].getCpf());
+        }
+        nativeCache(idsByCpf).put(customer.getCpf(), customer.getId());
+    }
+
+    private static boolean isNewer(Customer cached, Customer loaded) {
+        return cached != null && cached.getVersion() != null && loaded.getVersion() != null
+                && cached.getVersion() > loaded.getVersion();
+    }
+
+    /*
+        Caches a customer as just written.
+    */
+    public void put(Customer customer) {
+        changed(customer.getId());
+        Customer previous = get(customer.getId());
+        written(customer.getId(), customer.getCpf(), previous == null ? null : previous.getCpf());
+        if (!enabled) {
+            return;
+        }
+        if (previous != null && !previous.getCpf().equals(customer.getCpf())) {
+            idsByCpf.evict(previous.getCpf());
+        }
+        customers.put(customer.getId(), customer);
+        idsByCpf.put(customer.getCpf(), customer.getId());
+    }
+
+    public void evict(Long id) {
+        evict(id, null);
+    }
+
+    /*
+        Evicts the customer, also stamping the CPF it changed to, when
+        given.
+    */
+    public void evict(Long id, String cpf) {
+        changed(id);
+        Customer previous = get(id);
+        written(id, cpf, previous == null ? null : previous.getCpf());
+        if (previous != null) {
+            idsByCpf.evict(previous.getCpf());
+        }
+        customers.evict(id);
+    }
+
+    private void changed(Long id) {
+        if (recentlyChanged != null) {
+            recentlyChanged.put(id, Boolean.TRUE);
+        }
+    }
+
+    /*
+        Stamps the keys once the current transaction commits, before the
+        cache changes made after this call.
+    */
+    private void written(Object... keys) {
+        afterCommit(() -> {
+            long stamp = writeCount.incrementAndGet();
+            for (Object key : keys) {
+                if (key != null) {
+                    writes.put(key, stamp);
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public void clear() {
+        afterCommit(() -> forgottenWrites.set(writeCount.incrementAndGet()));
+        customers.clear();
+        idsByCpf.clear();
+    }
+
+    /*
+        IDs of the cached customers most likely to be kept, hottest
+        first, by the access frequencies of the eviction policy.
+    */
+    public List<Long> hottestIds(int limit) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        return nativeCache(customers).policy().eviction()
+                .map(eviction -> eviction.hottest(limit).keySet().stream()
+                        .map(id -> (Long) id)
+                        .collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+    }
+
+    public List<CacheStatistics> statistics() {
+        return Arrays.asList(statistics(customers), statistics(idsByCpf));
+    }
+
+    private CacheStatistics statistics(Cache cache) {
+        com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = nativeCache(cache);
+        CacheStats stats = nativeCache.stats();
+        return new CacheStatistics(cache.getName(), nativeCache.estimatedSize(), stats.hitCount(),
+                stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        Cache target = cache instanceof TransactionAwareCacheDecorator
+                ? ((TransactionAwareCacheDecorator) cache).getTargetCache()
+                : cache;
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) target.getNativeCache();
+    }
+}
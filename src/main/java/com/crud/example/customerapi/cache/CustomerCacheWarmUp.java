@@ -0,0 +1,141 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.service.CustomerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+@Component
+@Slf4j
+public class CustomerCacheWarmUp extends AbstractHealthIndicator {
+
+    /*
+        Saves the IDs of the hottest cached customers, as ranked by the
+        cache eviction policy, to a local snapshot file periodically and
+        on shutdown. On startup the customers of the snapshot are read
+        back into the cache, hottest first, and the health is reported
+        OUT_OF_SERVICE until done, or until the warm-up timeout, so that
+        the load balancer only routes traffic to a warm cache. The timeout
+        holds even when the warm-up is stuck on a slow read: past it the
+        health is UP, the warm-up going on in the background. Without a
+        snapshot file the application is up as soon as it is ready.
+    */
+
+    private static final int READ_CHUNK_SIZE = 500;
+
+    private final CustomerService customerService;
+    private final CustomerCache customerCache;
+
+    @Value("${customer.cache.snapshot-file:}")
+    private String snapshotFile;
+
+    @Value("${customer.cache.maximum-size:10000}")
+    private int snapshotSize;
+
+    @Value("${customer.cache.warm-up-timeout:30s}")
+    private Duration warmUpTimeout;
+
+    private volatile boolean warm;
+    private volatile int warmedUp;
+    private volatile boolean timedOut;
+    // System.nanoTime() the warm-up times out at, once started
+    private volatile boolean started;
+    private volatile long deadline;
+
+    @Autowired
+    public CustomerCacheWarmUp(CustomerService customerService, CustomerCache customerCache) {
+        this.customerService = customerService;
+        this.customerCache = customerCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (snapshotFile.isEmpty()) {
+            warm = true;
+            return;
+        }
+        deadline = System.nanoTime() + warmUpTimeout.toNanos();
+        started = true;
+        // the other startup listeners go on meanwhile
+        Thread thread = new Thread(this::load, "customer-cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Scheduled(initialDelayString = "${customer.cache.snapshot-interval-ms:60000}",
+            fixedDelayString = "${customer.cache.snapshot-interval-ms:60000}")
+    public void saveSnapshot() {
+        // a cache still warming up would replace the snapshot with a colder one
+        if (snapshotFile.isEmpty() || !warm) {
+            return;
+        }
+        List<Long> ids = customerCache.hottestIds(snapshotSize);
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                CacheSnapshot.write(snapshotPath(), ids);
+            }
+            log.debug("Cache snapshot saved with " + ids.size() + " customers.");
+        } catch (IOException e) {
+            log.warn("Cache snapshot could not be saved to " + snapshotFile + ".", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveSnapshot();
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.withDetail("warmedUp", warmedUp);
+        boolean pastDeadline = started && System.nanoTime() - deadline >= 0;
+        if (timedOut || !warm && pastDeadline) {
+            builder.withDetail("timedOut", true);
+        }
+        if (warm || pastDeadline) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+    }
+
+    private void load() {
+        try {
+            List<Long> ids = CacheSnapshot.read(snapshotPath());
+            for (int start = 0; start < ids.size(); start += READ_CHUNK_SIZE) {
+                if (System.nanoTime() - deadline > 0) {
+                    timedOut = true;
+                    log.warn("Cache warm-up timed out after " + warmedUp + " of " + ids.size() + " customers.");
+                    break;
+                }
+                List<Long> chunk = ids.subList(start, Math.min(start + READ_CHUNK_SIZE, ids.size()));
+                warmedUp += customerService.findAllById(chunk).getCustomers().size();
+            }
+            log.info("Cache warmed up with " + warmedUp + " customers.");
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cache warm-up failed after " + warmedUp + " customers, going on with a cold cache.", e);
+        } finally {
+            warm = true;
+        }
+    }
+
+    private Path snapshotPath() {
+        return Paths.get(snapshotFile);
+    }
+}
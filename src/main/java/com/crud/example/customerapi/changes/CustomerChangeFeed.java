@@ -0,0 +1,451 @@
+package com.crud.example.customerapi.changes;
+
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.exception.ChangesExpiredException;
+import com.crud.example.customerapi.model.CustomerChange;
+import com.crud.example.customerapi.repository.CustomerChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+public class CustomerChangeFeed implements SmartLifecycle {
+
+    /*
+        Follows the change log on a thread of its own and streams the
+        changes to the subscribed clients as server-sent events, the
+        change ID being the event ID. A single query per poll serves
+        every client that is up to date, the ones resuming from an older
+        cursor first catch up by reading the log from there.
+
+        Each subscriber has a backlog of its own, sent by one of a fixed
+        number of sender threads while it has one, so that a slow client
+        never holds up the listeners, and only holds up the others once
+        as many clients as senders are stalled. A subscriber gives its
+        sender back after each round, behind the ones waiting for one.
+        Subscribers with more changes waiting than the backlog limit are
+        dropped, to resume from their last event ID when they reconnect.
+        Subscribers beyond the limit of the node are refused with 503,
+        as the request executors do, to subscribe to another node or to
+        retry later.
+
+        Changes commit out of ID order, so the feed stops at the first
+        missing ID until it shows up, or until the gap timeout tells it
+        was likely rolled back. Skipped IDs are still looked up on every
+        poll until the retention passes, a change committing that late
+        is delivered then, after the ones following it. Delivery is at
+        least once: clients resume from the last event ID they got, and
+        listeners failing on changes get them again on the next poll.
+    */
+
+    private static final long HEARTBEAT_MILLIS = 15000;
+    // beyond that, the oldest skipped IDs are no longer looked up
+    private static final int MAX_SKIPPED = 10000;
+
+    private final CustomerChangeRepository repository;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders;
+    private final List<Consumer<List<CustomerChange>>> listeners = new CopyOnWriteArrayList<>();
+    // IDs moved past without their change, with when they were, only used by the feed thread
+    private final NavigableMap<Long, Long> skipped = new TreeMap<>();
+
+    @Value("${customer.changes.poll-interval-ms:1000}")
+    private long pollInterval;
+
+    @Value("${customer.changes.batch-size:500}")
+    private int batchSize;
+
+    @Value("${customer.changes.gap-timeout:10s}")
+    private Duration gapTimeout;
+
+    @Value("${customer.changes.retention:7d}")
+    private Duration retention;
+
+    @Value("${customer.changes.emitter-timeout:30m}")
+    private Duration emitterTimeout;
+
+    @Value("${customer.changes.subscriber-backlog:10000}")
+    private int subscriberBacklog;
+
+    @Value("${customer.changes.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+    // ID of the last change delivered, null until read from the log
+    private volatile Long lastId;
+    private long gapSeenAt;
+
+    @Autowired
+    public CustomerChangeFeed(CustomerChangeRepository repository,
+                              @Value("${customer.changes.sender-threads:8}") int senderThreads) {
+        this.repository = repository;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("customer-change-sender-");
+        threadFactory.setDaemon(true);
+        this.senders = Executors.newFixedThreadPool(senderThreads, threadFactory);
+    }
+
+    /*
+        Streams the changes after the given cursor, or the ones from now
+        on when there is none.
+    */
+    public SseEmitter subscribe(Long since) {
+        if (since != null && expired(since)) {
+            throw new ChangesExpiredException("Changes after " + since + " are no longer retained, read the customers again.");
+        }
+
+        return subscribe(new SseEmitter(emitterTimeout.toMillis()), since);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Long since) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new RejectedExecutionException("Over " + maxSubscribers + " customer change feed subscribers.");
+        }
+        Subscriber subscriber = new Subscriber(emitter, since);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        // ends the stream cleanly, instead of the timeout error response written over it
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        subscribers.add(subscriber);
+        LockSupport.unpark(thread);
+        return emitter;
+    }
+
+    /*
+        Hands the changes, in order, to the listener on the feed thread,
+        for the components of this node following the change log. The
+        listener must return quickly, any slow work belongs on a thread
+        of its own (see CustomerChangeFollower).
+    */
+    public void addListener(Consumer<List<CustomerChange>> listener) {
+        listeners.add(listener);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::follow, "customer-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.drop();
+        }
+        senders.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                // replicas may not have the latest changes yet
+                PrimaryRouting.call(() -> {
+                    poll();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Customer change feed could not read the change log, retrying in " + pollInterval + " ms.", e);
+            }
+            LockSupport.parkNanos(pollInterval * 1000000L);
+        }
+    }
+
+    void poll() {
+        if (lastId == null) {
+            // changes made within the gap timeout may still be missing some that commit later
+            Long last = repository.findLastIdBefore(new Date(System.currentTimeMillis() - gapTimeout.toMillis()));
+            lastId = last == null ? 0L : last;
+        }
+
+        long previous = lastId;
+        pollSkipped(previous);
+        while (true) {
+            List<CustomerChange> changes = nextChanges(previous);
+            deliver(previous, changes, false);
+            if (changes.isEmpty()) {
+                return;
+            }
+            for (Consumer<List<CustomerChange>> listener : listeners) {
+                listener.accept(changes);
+            }
+            previous = changes.get(changes.size() - 1).getId();
+            lastId = previous;
+            if (changes.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<CustomerChange> nextChanges(long after) {
+        List<CustomerChange> changes = repository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize));
+        List<CustomerChange> next = new ArrayList<>(changes.size());
+        long last = after;
+        for (CustomerChange change : changes) {
+            if (change.getId() != last + 1) {
+                if (!gapTimedOut()) {
+                    break;
+                }
+                skip(last + 1, change.getId());
+            }
+            gapSeenAt = 0;
+            next.add(change);
+            last = change.getId();
+        }
+        return next;
+    }
+
+    private void skip(long from, long to) {
+        long now = System.currentTimeMillis();
+        for (long id = Math.max(from, to - MAX_SKIPPED); id < to; id++) {
+            skipped.put(id, now);
+        }
+        if (to - from > MAX_SKIPPED || skipped.size() > MAX_SKIPPED) {
+            log.warn("Over " + MAX_SKIPPED + " customer change IDs skipped, the oldest ones are no longer looked up.");
+            while (skipped.size() > MAX_SKIPPED) {
+                skipped.pollFirstEntry();
+            }
+        }
+    }
+
+    /*
+        Delivers the skipped changes that committed since, the ones
+        skipped longer than the retention ago are given up on.
+    */
+    private void pollSkipped(long previous) {
+        long expiredBefore = System.currentTimeMillis() - retention.toMillis();
+        skipped.values().removeIf(skippedAt -> skippedAt < expiredBefore);
+        List<Long> ids = new ArrayList<>(skipped.keySet());
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<CustomerChange> changes = repository.findByIdInOrderByIdAsc(
+                    ids.subList(start, Math.min(start + batchSize, ids.size())));
+            if (changes.isEmpty()) {
+                continue;
+            }
+            deliver(previous, changes, true);
+            for (Consumer<List<CustomerChange>> listener : listeners) {
+                listener.accept(changes);
+            }
+            for (CustomerChange change : changes) {
+                skipped.remove(change.getId());
+            }
+        }
+    }
+
+    private void deliver(long previous, List<CustomerChange> changes, boolean late) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(previous, changes, late)) {
+                log.debug("Customer change feed subscriber dropped, over " + subscriberBacklog + " changes behind.");
+                subscriber.drop();
+            }
+        }
+    }
+
+    private boolean gapTimedOut() {
+        long now = System.currentTimeMillis();
+        if (gapSeenAt == 0) {
+            gapSeenAt = now;
+        }
+        return now - gapSeenAt >= gapTimeout.toMillis();
+    }
+
+    private boolean expired(long since) {
+        Long first = PrimaryRouting.call(repository::findFirstId);
+        if (first == null) {
+            Long last = lastId;
+            return last != null && since < last;
+        }
+        return since < first - 1;
+    }
+
+    private static class Batch {
+
+        // the change before them
+        private final long previous;
+        private final List<CustomerChange> changes;
+        // skipped changes committed since, before the previous one
+        private final boolean late;
+
+        Batch(long previous, List<CustomerChange> changes, boolean late) {
+            this.previous = previous;
+            this.changes = changes;
+            this.late = late;
+        }
+    }
+
+    private class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+        // changes in the batches not sent yet
+        private final AtomicInteger backlog = new AtomicInteger();
+        // whether a sender thread has the subscriber, at most one at a time
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean dropped;
+        // only read and written by the sender thread once subscribed
+        private Long cursor;
+        private long sentAt = System.currentTimeMillis();
+
+        Subscriber(SseEmitter emitter, Long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        /*
+            Queues the changes following the given one, false when the
+            subscriber is too far behind to take them.
+        */
+        boolean offer(long previous, List<CustomerChange> changes, boolean late) {
+            if (changes.isEmpty()) {
+                // only to catch up and send heartbeats, when there is nothing else to send
+                if (!batches.isEmpty()) {
+                    return true;
+                }
+            } else if (backlog.addAndGet(changes.size()) > subscriberBacklog) {
+                return false;
+            }
+            batches.add(new Batch(previous, changes, late));
+            schedule();
+            return true;
+        }
+
+        /*
+            Ends the stream, on a sender thread: completing the emitter
+            waits for a send in progress.
+        */
+        void drop() {
+            dropped = true;
+            subscribers.remove(this);
+            batches.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    sending.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Batch batch;
+            while ((batch = batches.poll()) != null && !dropped) {
+                try {
+                    send(batch);
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away, or the emitter timed out
+                    log.debug("Customer change feed subscriber dropped.", e);
+                    dropped = true;
+                    subscribers.remove(this);
+                }
+                backlog.addAndGet(-batch.changes.size());
+            }
+            if (dropped) {
+                emitter.complete();
+                // keeps the subscriber from being sent to again
+                return;
+            }
+            sending.set(false);
+            // batches queued since, sent once the subscribers waiting for a sender had their turn
+            if (!batches.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void send(Batch batch) throws IOException {
+            if (cursor == null) {
+                cursor = batch.previous;
+            }
+            if (batch.late) {
+                sendLate(batch.changes);
+                return;
+            }
+            while (cursor < batch.previous) {
+                long after = cursor;
+                // replicas may not have the latest changes yet
+                List<CustomerChange> missed = PrimaryRouting.call(() ->
+                        repository.findBetween(after, batch.previous, PageRequest.of(0, batchSize)));
+                if (missed.isEmpty()) {
+                    cursor = batch.previous;
+                }
+                send(missed);
+            }
+            send(batch.changes);
+        }
+
+        private void sendLate(List<CustomerChange> changes) throws IOException {
+            for (CustomerChange change : changes) {
+                // the ones after the cursor are still to be read from the log
+                if (change.getId() <= cursor) {
+                    // with the cursor as event ID, which a reconnection resumes from
+                    emitter.send(SseEmitter.event()
+                            .id(cursor.toString())
+                            .data(change, MediaType.APPLICATION_JSON));
+                    sentAt = System.currentTimeMillis();
+                }
+            }
+        }
+
+        private void send(List<CustomerChange> changes) throws IOException {
+            for (CustomerChange change : changes) {
+                if (change.getId() > cursor) {
+                    emitter.send(SseEmitter.event()
+                            .id(change.getId().toString())
+                            .data(change, MediaType.APPLICATION_JSON));
+                    cursor = change.getId();
+                    sentAt = System.currentTimeMillis();
+                }
+            }
+            // keeps proxies from closing idle streams, and finds out about clients gone
+            if (System.currentTimeMillis() - sentAt >= HEARTBEAT_MILLIS) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+                sentAt = System.currentTimeMillis();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.crud.example.customerapi.changes;
+
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.model.CustomerChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Slf4j
+public abstract class CustomerChangeFollower<S, T> {
+
+    /*
+        Keeps in-memory state of every customer on this node: built from
+        the database, then following the change log, so that the changes
+        made on any node, patches and imports included, are in it after a
+        poll of the change feed. The changed customers are read again by
+        ID and put again, or removed when gone, on a thread of the
+        follower, retried after the poll interval when they cannot be
+        read. Changes heard of while a build runs are applied again once
+        it is done, the build may have read the customers before them.
+
+        Subclasses read the customers of type T and keep them in the
+        state S, which must be safe to read while it is being changed.
+    */
+
+    private static final int READ_CHUNK_SIZE = 500;
+
+    private final TransactionTemplate transactionTemplate;
+    // customers changed and not applied yet, guarded by this
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private final Object applyLock = new Object();
+    private final ScheduledExecutorService applier;
+
+    @Value("${customer.changes.poll-interval-ms:1000}")
+    private long retryInterval;
+
+    private volatile S state;
+    private boolean building;
+    // whether applying the pending customers is scheduled, guarded by this
+    private boolean scheduled;
+
+    protected CustomerChangeFollower(String name, PlatformTransactionManager transactionManager,
+                                     CustomerChangeFeed changeFeed) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(name + "-follower-");
+        threadFactory.setDaemon(true);
+        this.applier = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        changeFeed.addListener(this::apply);
+    }
+
+    protected abstract boolean isEnabled();
+
+    protected abstract S newState();
+
+    protected abstract Stream<T> streamAll();
+
+    protected abstract List<T> findByIdIn(List<Long> ids);
+
+    protected abstract Long idOf(T customer);
+
+    protected abstract void put(S state, T customer);
+
+    protected abstract void remove(S state, Long id);
+
+    /*
+        Called once a build replaced the previous state, null on the
+        first one, with the customers that had a change pending while it
+        ran: both states may count them differently without either being
+        wrong. No change is applied to either state until it returns.
+    */
+    protected void replaced(S previous, S built, Set<Long> changedWhileBuilding) {
+    }
+
+    /*
+        The current state, null until first built.
+    */
+    protected S state() {
+        return state;
+    }
+
+    protected void rebuild() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (this) {
+            building = true;
+        }
+        try {
+            // lets the changes being applied finish, the next ones stay pending until the build is done
+            synchronized (applyLock) {
+            }
+            S built = newState();
+            // a replica behind the primary would leave out its latest customers
+            PrimaryRouting.call(() -> transactionTemplate.execute(status -> {
+                try (Stream<T> customers = streamAll()) {
+                    customers.forEach(customer -> put(built, customer));
+                }
+                return null;
+            }));
+            S previous;
+            Set<Long> changedWhileBuilding;
+            synchronized (this) {
+                previous = state;
+                state = built;
+                changedWhileBuilding = new HashSet<>(pending);
+            }
+            replaced(previous, built, changedWhileBuilding);
+        } finally {
+            synchronized (this) {
+                building = false;
+            }
+        }
+        schedule(0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        applier.shutdownNow();
+    }
+
+    /*
+        Runs on the change feed thread, only taking note of the changed
+        customers.
+    */
+    private void apply(List<CustomerChange> changes) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            for (CustomerChange change : changes) {
+                pending.add(change.getCustomerId());
+            }
+            if (building || state == null) {
+                return;
+            }
+        }
+        schedule(0);
+    }
+
+    private void schedule(long delay) {
+        synchronized (this) {
+            if (scheduled || pending.isEmpty()) {
+                return;
+            }
+            scheduled = true;
+        }
+        try {
+            applier.schedule(this::applyScheduled, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            synchronized (this) {
+                scheduled = false;
+            }
+        }
+    }
+
+    private void applyScheduled() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        try {
+            // replicas may not have the latest changes yet
+            PrimaryRouting.call(() -> {
+                applyPending();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Changed customers could not be read by " + getClass().getSimpleName() + ", retrying in "
+                    + retryInterval + " ms.", e);
+            schedule(retryInterval);
+        }
+    }
+
+    private void applyPending() {
+        // one at a time, so that an older read of a customer never overwrites a newer one
+        synchronized (applyLock) {
+            S current;
+            List<Long> ids;
+            synchronized (this) {
+                current = state;
+                if (building || current == null) {
+                    return;
+                }
+                // customers changing again while read are pending again
+                ids = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            try {
+                for (int start = 0; start < ids.size(); start += READ_CHUNK_SIZE) {
+                    List<Long> chunk = ids.subList(start, Math.min(start + READ_CHUNK_SIZE, ids.size()));
+                    Set<Long> missing = new HashSet<>(chunk);
+                    for (T customer : findByIdIn(chunk)) {
+                        put(current, customer);
+                        missing.remove(idOf(customer));
+                    }
+                    for (Long id : missing) {
+                        remove(current, id);
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending.addAll(ids);
+                }
+                throw e;
+            }
+        }
+    }
+}
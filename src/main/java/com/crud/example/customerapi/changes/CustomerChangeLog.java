@@ -0,0 +1,68 @@
+package com.crud.example.customerapi.changes;
+
+import com.crud.example.customerapi.datasource.WriteTracking;
+import com.crud.example.customerapi.model.CustomerChange;
+import com.crud.example.customerapi.repository.CustomerChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+@Component
+@Slf4j
+public class CustomerChangeLog {
+
+    /*
+        Records the customer changes in the change log through the
+        connection of the current transaction, so that a change is
+        logged if and only if it commits. Inserted with JDBC batches, as
+        identity IDs keep Hibernate from batching them, and the changes
+        older than the retention are purged. The request making the
+        changes is handed the time of its write once they commit.
+    */
+
+    private static final String INSERT =
+            "insert into customer_change (customer_id, type, changed_at) values (?, ?, current_timestamp)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerChangeRepository repository;
+
+    @Value("${customer.changes.retention:7d}")
+    private Duration retention;
+
+    @Autowired
+    public CustomerChangeLog(JdbcTemplate jdbcTemplate, CustomerChangeRepository repository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+    }
+
+    public void record(CustomerChange.Type type, Long customerId) {
+        recordAll(type, Collections.singletonList(customerId));
+    }
+
+    public void recordAll(CustomerChange.Type type, Collection<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, customerIds, customerIds.size(), (statement, customerId) -> {
+            statement.setLong(1, customerId);
+            statement.setString(2, type.name());
+        });
+        WriteTracking.written();
+    }
+
+    @Scheduled(fixedDelayString = "${customer.changes.purge-interval-ms:3600000}")
+    @Transactional
+    public void purge() {
+        int purged = repository.deleteChangedBefore(new Date(System.currentTimeMillis() - retention.toMillis()));
+        log.debug(purged + " customer changes purged.");
+    }
+}
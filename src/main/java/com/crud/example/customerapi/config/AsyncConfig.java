@@ -0,0 +1,110 @@
+package com.crud.example.customerapi.config;
+
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.datasource.WriteTracking;
+import com.crud.example.customerapi.sql.SqlStatisticsTaskDecorator;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    /*
+        Executors the customer endpoints run on, so that Tomcat threads
+        are released while requests wait for the database. Each executor
+        has a fixed number of threads and a bounded queue, and rejects
+        requests beyond that (answered with 503, see
+        ResponseEntityExceptionHandler) instead of piling them up on the
+        connection pool. Streamed exports hold a connection for as long
+        as they run, and imports read their upload for as long as it
+        takes, so each gets an executor of their own. The SQL statistics,
+        the primary routing and the write tracking of the request are
+        carried over to them.
+    */
+
+    public static final String CUSTOMER_EXECUTOR = "customerExecutor";
+    public static final String EXPORT_EXECUTOR = "exportExecutor";
+    public static final String IMPORT_EXECUTOR = "importExecutor";
+
+    private static final SqlStatisticsTaskDecorator SQL_STATISTICS = new SqlStatisticsTaskDecorator();
+
+    @Value("${customer.executor.pool-size:5}")
+    private int poolSize;
+
+    @Value("${customer.executor.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${customer.export.concurrency:2}")
+    private int exportConcurrency;
+
+    @Value("${customer.export.timeout:1h}")
+    private Duration exportTimeout;
+
+    @Value("${customer.batch.concurrency:2}")
+    private int importConcurrency;
+
+    @Bean(name = CUSTOMER_EXECUTOR)
+    public ThreadPoolTaskExecutor customerExecutor() {
+        return executor("customer-", poolSize, queueCapacity);
+    }
+
+    @Bean(name = EXPORT_EXECUTOR)
+    public ThreadPoolTaskExecutor exportExecutor() {
+        return executor("export-", exportConcurrency, 0);
+    }
+
+    @Bean(name = IMPORT_EXECUTOR)
+    public ThreadPoolTaskExecutor importExecutor() {
+        return executor("import-", importConcurrency, 0);
+    }
+
+    @Bean
+    public MeterBinder executorMetrics() {
+        return registry -> {
+            new ExecutorServiceMetrics(customerExecutor().getThreadPoolExecutor(), CUSTOMER_EXECUTOR,
+                    Collections.<Tag>emptyList()).bindTo(registry);
+            new ExecutorServiceMetrics(exportExecutor().getThreadPoolExecutor(), EXPORT_EXECUTOR,
+                    Collections.<Tag>emptyList()).bindTo(registry);
+            new ExecutorServiceMetrics(importExecutor().getThreadPoolExecutor(), IMPORT_EXECUTOR,
+                    Collections.<Tag>emptyList()).bindTo(registry);
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // runs the StreamingResponseBody of the exports, the only callables, with a timeout of their own
+        configurer.setTaskExecutor(exportExecutor());
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                ((AsyncWebRequest) request).setTimeout(exportTimeout.toMillis());
+            }
+        });
+    }
+
+    private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(runnable ->
+                SQL_STATISTICS.decorate(PrimaryRouting.decorate(WriteTracking.decorate(runnable))));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -0,0 +1,50 @@
+package com.crud.example.customerapi.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@Configuration
+public class CacheConfig {
+
+    /*
+        Bounded in-process caches. Puts and evictions made inside a
+        transaction are only applied after it commits, so a rolled back
+        write never reaches the cache.
+    */
+
+    public static final String CUSTOMERS = "customers";
+    public static final String CUSTOMER_IDS_BY_CPF = "customerIdsByCpf";
+
+    @Value("${customer.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${customer.cache.expire-after-write:10m}")
+    private Duration expireAfterWrite;
+
+    @Bean
+    public CacheManager cacheManager() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(Arrays.asList(
+                buildCache(CUSTOMERS),
+                buildCache(CUSTOMER_IDS_BY_CPF)));
+        return cacheManager;
+    }
+
+    private Cache buildCache(String name) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats();
+        return new TransactionAwareCacheDecorator(new CaffeineCache(name, builder.build(), false));
+    }
+}
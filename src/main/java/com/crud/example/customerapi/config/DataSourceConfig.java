@@ -0,0 +1,96 @@
+package com.crud.example.customerapi.config;
+
+import com.crud.example.customerapi.datasource.ReadYourWritesFilter;
+import com.crud.example.customerapi.datasource.ReplicaHealthIndicator;
+import com.crud.example.customerapi.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnExpression("!'${customer.datasource.replica-urls:}'.trim().isEmpty()")
+public class DataSourceConfig {
+
+    /*
+        Replaces the auto-configured data source when replicas are given:
+        read-only transactions go to the replicas, everything else to the
+        primary (see ReplicaRoutingDataSource). Every pool is configured
+        from spring.datasource.*, the replicas only change the URL, and is
+        measured as hikaricp_* tagged with its pool name.
+    */
+
+    @Value("${customer.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    @Value("${customer.datasource.replica-connection-timeout:1s}")
+    private Duration replicaConnectionTimeout;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig hikariConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, HikariConfig hikariConfig,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = pool("primary", properties.determineUrl(), properties, hikariConfig, meterRegistry);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource replica = pool(name, url.trim(), properties, hikariConfig, meterRegistry);
+            // a replica that went down is given up on quickly, reading from the primary instead
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaHealthIndicator replicaHealthIndicator(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReplicaHealthIndicator(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${customer.datasource.replica-lag-window:5s}") Duration replicaLagWindow) {
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(replicaLagWindow));
+    }
+
+    private static HikariDataSource pool(String name, String url, DataSourceProperties properties,
+                                         HikariConfig hikariConfig, ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource pool = new HikariDataSource();
+        hikariConfig.copyStateTo(pool);
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setUsername(properties.determineUsername());
+        pool.setPassword(properties.determinePassword());
+        // the pool starts on its first connection, even if the database is down by then
+        pool.setInitializationFailTimeout(-1);
+        meterRegistry.ifAvailable(pool::setMetricRegistry);
+        return pool;
+    }
+}
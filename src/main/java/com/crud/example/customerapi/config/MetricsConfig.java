@@ -0,0 +1,23 @@
+package com.crud.example.customerapi.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /*
+        Times the methods annotated with @Timed, such as the ones of
+        CustomerService. Endpoints, the connection pool, the caches and
+        Hibernate statistics are measured by Spring Boot itself.
+    */
+
+    public static final String CUSTOMER_SERVICE_TIMER = "customer.service";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
@@ -1,11 +1,18 @@
 package com.crud.example.customerapi.config;
 
+import com.crud.example.customerapi.security.TokenAuthenticationFilter;
+import com.crud.example.customerapi.security.TokenService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableGlobalMethodSecurity(securedEnabled = true)
@@ -13,24 +20,40 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     /*
         Demonstrates a basic spring security authentication only for
-        delete methods
+        delete methods. The password is hashed with BCrypt, checked by
+        HTTP Basic on every request, so clients deleting many customers
+        exchange it once for a bearer token (see TokenService), verified
+        without it. No session is kept either way.
     */
 
+    private final TokenService tokenService;
+
+    @Autowired
+    public SecurityConfig(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
                 .csrf().disable()
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
                 .authorizeRequests()
                     .antMatchers(HttpMethod.DELETE, "/customers/**").hasRole("ADMIN")
+                    .antMatchers("/auth/tokens").authenticated()
                 .and()
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
                 .httpBasic();
     }
 
     @Override
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
+        PasswordEncoder passwordEncoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
         auth.inMemoryAuthentication()
+                .passwordEncoder(passwordEncoder)
                 .withUser("admin")
-                .password("{noop}password")
+                .password(passwordEncoder.encode("password"))
                 .roles("ADMIN");
     }
 }
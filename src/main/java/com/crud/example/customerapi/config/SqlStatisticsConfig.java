@@ -0,0 +1,55 @@
+package com.crud.example.customerapi.config;
+
+import com.crud.example.customerapi.datasource.ReplicaRoutingDataSource;
+import com.crud.example.customerapi.sql.SqlStatisticsFilter;
+import com.crud.example.customerapi.sql.SqlStatisticsListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class SqlStatisticsConfig {
+
+    /*
+        Wraps the data source in a proxy counting the statements of each
+        request (see SqlStatisticsFilter). The response headers are meant
+        for development, see application-dev.properties.
+    */
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(
+            @Value("${customer.sql-statistics.slow-query-threshold:200ms}") Duration slowQueryThreshold) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // with replicas, statements go through the lazy proxy in front of the routing data source
+                if (!(bean instanceof DataSource) || bean instanceof ReplicaRoutingDataSource) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create((DataSource) bean)
+                        .name(beanName)
+                        .listener(new SqlStatisticsListener(slowQueryThreshold))
+                        .build();
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatisticsFilter> sqlStatisticsFilter(
+            @Value("${customer.sql-statistics.headers-enabled:false}") boolean headersEnabled,
+            @Value("${customer.sql-statistics.max-statements:10}") int maxStatements,
+            @Value("${customer.sql-statistics.max-duration:1s}") Duration maxDuration) {
+        FilterRegistrationBean<SqlStatisticsFilter> registration = new FilterRegistrationBean<>(
+                new SqlStatisticsFilter(headersEnabled, maxStatements, maxDuration));
+        // around every other filter, security included
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
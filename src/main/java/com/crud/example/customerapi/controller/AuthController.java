@@ -0,0 +1,63 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.dto.AuthToken;
+import com.crud.example.customerapi.exception.InvalidRequestException;
+import com.crud.example.customerapi.security.TokenAuthentication;
+import com.crud.example.customerapi.security.TokenRevocations;
+import com.crud.example.customerapi.security.TokenService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Api(value="Authentication token API")
+@RestController
+@RequestMapping("/auth/tokens")
+public class AuthController {
+
+    private TokenService tokenService;
+    private TokenRevocations tokenRevocations;
+
+    @Autowired
+    public AuthController(TokenService tokenService, TokenRevocations tokenRevocations) {
+        this.tokenService = tokenService;
+        this.tokenRevocations = tokenRevocations;
+    }
+
+    @ApiOperation(value = "Issue a bearer token for the user authenticated with HTTP Basic", response = AuthToken.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully issued a token, to send as 'Authorization: Bearer <token>'"),
+            @ApiResponse(code = 400, message = "The request was authenticated with a token instead of a user name and password"),
+            @ApiResponse(code = 401, message = "The user name or password is wrong")
+    })
+    @PostMapping
+    public ResponseEntity<AuthToken> issue(Authentication authentication) {
+        // a token renewing itself would never expire
+        if (authentication instanceof TokenAuthentication) {
+            throw new InvalidRequestException("Tokens are issued for a user name and password, not for another token.");
+        }
+        return ResponseEntity.ok(tokenService.issue(authentication));
+    }
+
+    @ApiOperation(value = "Revoke the bearer token of the request")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Successfully revoked the token, on every node"),
+            @ApiResponse(code = 400, message = "The request was not authenticated with a token"),
+            @ApiResponse(code = 401, message = "The token is invalid, expired or already revoked")
+    })
+    @DeleteMapping
+    public ResponseEntity<Void> revoke(Authentication authentication) {
+        if (!(authentication instanceof TokenAuthentication)) {
+            throw new InvalidRequestException("Only the token of the request can be revoked.");
+        }
+        tokenRevocations.revoke((TokenAuthentication) authentication);
+        return ResponseEntity.noContent().build();
+    }
+}
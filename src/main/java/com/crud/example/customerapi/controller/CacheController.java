@@ -0,0 +1,32 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.cache.CustomerCache;
+import com.crud.example.customerapi.dto.CacheStatistics;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Api(value="Cache statistics API")
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+
+    private CustomerCache customerCache;
+
+    @Autowired
+    public CacheController(CustomerCache customerCache) {
+        this.customerCache = customerCache;
+    }
+
+    @ApiOperation(value = "View size, hit, miss and eviction statistics of the customer caches", response = List.class)
+    @GetMapping
+    public ResponseEntity<List<CacheStatistics>> statistics() {
+        return ResponseEntity.ok(customerCache.statistics());
+    }
+}
@@ -1,9 +1,22 @@
 package com.crud.example.customerapi.controller;
 
+import com.crud.example.customerapi.changes.CustomerChangeFeed;
+import com.crud.example.customerapi.config.AsyncConfig;
+import com.crud.example.customerapi.dto.BatchResult;
+import com.crud.example.customerapi.dto.CustomerChanges;
+import com.crud.example.customerapi.dto.CustomerLookup;
+import com.crud.example.customerapi.dto.CustomerPage;
+import com.crud.example.customerapi.dto.CustomerStatistics;
 import com.crud.example.customerapi.exception.CustomerNotFoundException;
+import com.crud.example.customerapi.exception.InvalidRequestException;
 import com.crud.example.customerapi.model.Address;
 import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.service.CustomerImportService;
 import com.crud.example.customerapi.service.CustomerService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -11,66 +24,297 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import javax.validation.constraints.Min;
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import static com.crud.example.customerapi.config.ContentNegotiationConfig.APPLICATION_SMILE_VALUE;
 
 @Api(value="Customer CRUD API")
 @RestController
 @RequestMapping("/customers")
+@Validated
 @Slf4j
 public class CustomerController {
 
     private static final String ID_NOT_FOUND = "Customer with ID %d not found.";
+    private static final String CPF_NOT_FOUND = "Customer with CPF %s not found.";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String APPLICATION_MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+    private static final List<MediaType> EXPORT_MEDIA_TYPES = Arrays.asList(
+            MediaType.parseMediaType(APPLICATION_NDJSON_VALUE),
+            MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType(APPLICATION_SMILE_VALUE));
 
     private CustomerService customerService;
 
+    private CustomerImportService customerImportService;
+
+    private CustomerChangeFeed changeFeed;
+
+    private ObjectMapper objectMapper;
+
+    private Validator validator;
+
+    private CustomerPatchReader patchReader;
+
+    private TaskExecutor executor;
+
+    private TaskExecutor importExecutor;
+
+    private List<AbstractJackson2HttpMessageConverter> jacksonConverters;
+
+    @Value("${customer.executor.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${customer.batch.timeout:10m}")
+    private Duration importTimeout;
+
+    @Value("${customer.lookup.max-ids:500}")
+    private int maxLookupIds;
+
     @Autowired
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, CustomerImportService customerImportService,
+                              CustomerChangeFeed changeFeed, ObjectMapper objectMapper, Validator validator,
+                              @Qualifier(AsyncConfig.CUSTOMER_EXECUTOR) TaskExecutor executor,
+                              @Qualifier(AsyncConfig.IMPORT_EXECUTOR) TaskExecutor importExecutor,
+                              HttpMessageConverters messageConverters) {
         this.customerService = customerService;
+        this.customerImportService = customerImportService;
+        this.changeFeed = changeFeed;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.executor = executor;
+        this.importExecutor = importExecutor;
+        this.jacksonConverters = messageConverters.getConverters().stream()
+                .filter(AbstractJackson2HttpMessageConverter.class::isInstance)
+                .map(AbstractJackson2HttpMessageConverter.class::cast)
+                .collect(Collectors.toList());
+        this.patchReader = new CustomerPatchReader(objectMapper, validator);
     }
 
-    @ApiOperation(value = "View a list of customers", response = List.class)
+    @ApiOperation(value = "View a page of customers ordered by ID, or a customer filtered by CPF", response = List.class)
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully retrieved customer list or a customer filtered by CPF"),
+            @ApiResponse(code = 200, message = "Successfully retrieved a page of customers or a customer filtered by CPF"),
+            @ApiResponse(code = 400, message = "The page size limit is not a positive number"),
             @ApiResponse(code = 404, message = "The customer you tried to search for by its CPF was not found")
     })
     @GetMapping
-    public ResponseEntity<List<Customer>> findCustomers(
-            @ApiParam(value = "Customer CPF which corresponding object will be retrieved") @RequestParam(value = "cpf", required = false) String cpf){
-        if (cpf == null) {
-            return ResponseEntity.ok(customerService.findAll());
+    public DeferredResult<ResponseEntity<List<Customer>>> findCustomers(
+            @ApiParam(value = "Customer CPF which corresponding object will be retrieved") @RequestParam(value = "cpf", required = false) String cpf,
+            @ApiParam(value = "Cursor returned in the X-Next-Cursor header of the previous page") @RequestParam(value = "after", required = false) Long after,
+            @ApiParam(value = "Maximum number of customers in the page, capped by the server") @RequestParam(value = "limit", required = false) @Min(1) Integer limit,
+            UriComponentsBuilder builder) {
+        return async(timeout, () -> {
+            if (cpf == null) {
+                return pageResponse(customerService.findPage(after, limit), builder.path("/customers"));
+            }
+
+            return customerService.findByDocument(cpf)
+                    .map(customer -> ResponseEntity.ok(Collections.singletonList(customer)))
+                    .orElseThrow(() -> new CustomerNotFoundException(String.format(CPF_NOT_FOUND, cpf)));
+        });
+    }
+
+    @ApiOperation(value = "View only the given fields of a page of customers ordered by ID, or of a customer filtered by CPF", response = List.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the fields of a page of customers or of a customer filtered by CPF"),
+            @ApiResponse(code = 400, message = "The page size limit is not a positive number, or some of the fields do not exist"),
+            @ApiResponse(code = 404, message = "The customer you tried to search for by its CPF was not found")
+    })
+    @GetMapping(params = {"fields", "!ids"})
+    public DeferredResult<ResponseEntity<List<ObjectNode>>> findCustomerFields(
+            @ApiParam(value = "Customer CPF which corresponding object will be retrieved") @RequestParam(value = "cpf", required = false) String cpf,
+            @ApiParam(value = "Cursor returned in the X-Next-Cursor header of the previous page") @RequestParam(value = "after", required = false) Long after,
+            @ApiParam(value = "Maximum number of customers in the page, capped by the server") @RequestParam(value = "limit", required = false) @Min(1) Integer limit,
+            @ApiParam(value = "Comma separated customer fields to retrieve, the address is only read when listed") @RequestParam("fields") String fields,
+            UriComponentsBuilder builder) {
+        CustomerFields selected = CustomerFields.parse(objectMapper, fields);
+        return async(timeout, () -> {
+            if (cpf == null) {
+                CustomerPage<?> page = selected.includesAddress()
+                        ? customerService.findPage(after, limit)
+                        : customerService.findSummaryPage(after, limit);
+                return pageResponse(page.map(selected::select), builder.path("/customers").queryParam("fields", fields));
+            }
+
+            Optional<?> customer = selected.includesAddress()
+                    ? customerService.findByDocument(cpf)
+                    : customerService.findSummaryByDocument(cpf);
+            return customer
+                    .map(found -> ResponseEntity.ok(Collections.singletonList(selected.select(found))))
+                    .orElseThrow(() -> new CustomerNotFoundException(String.format(CPF_NOT_FOUND, cpf)));
+        });
+    }
+
+    @ApiOperation(value = "View the customers with the given IDs, and the IDs not found")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the customers found, in the order of their IDs in the request"),
+            @ApiResponse(code = 400, message = "More IDs than the server accepts in one lookup")
+    })
+    @GetMapping(params = "ids")
+    public DeferredResult<ResponseEntity<CustomerLookup>> findByIds(
+            @ApiParam(value = "Comma separated IDs of the customers to retrieve") @RequestParam("ids") List<Long> ids) {
+        return lookup(ids);
+    }
+
+    @ApiOperation(value = "View the customers with the IDs given in the request body, and the IDs not found")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the customers found, in the order of their IDs in the request"),
+            @ApiResponse(code = 400, message = "More IDs than the server accepts in one lookup")
+    })
+    @PostMapping(value = "/lookup", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
+    public DeferredResult<ResponseEntity<CustomerLookup>> lookupByIds(
+            @ApiParam(value = "JSON array with the IDs of the customers to retrieve") @RequestBody List<Long> ids) {
+        return lookup(ids);
+    }
+
+    private DeferredResult<ResponseEntity<CustomerLookup>> lookup(List<Long> ids) {
+        if (ids.size() > maxLookupIds) {
+            throw new InvalidRequestException("At most " + maxLookupIds + " IDs can be looked up at once, got " + ids.size() + ".");
+        }
+        return async(timeout, () -> ResponseEntity.ok(customerService.findAllById(ids)));
+    }
+
+    @ApiOperation(value = "View the count of customers by state, city and age bracket", response = CustomerStatistics.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the customer statistics"),
+            @ApiResponse(code = 503, message = "The statistics are not counted yet")
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<CustomerStatistics> statistics() {
+        // counted in memory, answered without going to the executor
+        return ResponseEntity.ok(customerService.statistics());
+    }
+
+    @ApiOperation(value = "Search customers by words or parts of their names, email, city and state", response = List.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the customers matching every word of the query, best matches first"),
+            @ApiResponse(code = 400, message = "The query is blank or the limit is not a positive number"),
+            @ApiResponse(code = 503, message = "The search index is not built yet")
+    })
+    @GetMapping("/search")
+    public DeferredResult<ResponseEntity<List<Customer>>> search(
+            @ApiParam(value = "Words to search for, each one matching whole words, their beginning or part of them") @RequestParam("q") String query,
+            @ApiParam(value = "Maximum number of customers, capped by the server") @RequestParam(value = "limit", required = false) @Min(1) Integer limit) {
+        if (query.trim().isEmpty()) {
+            throw new InvalidRequestException("The search query is blank.");
         }
+        return async(timeout, () -> ResponseEntity.ok(customerService.search(query, limit)));
+    }
 
-        return customerService.findByDocument(cpf)
-                .map(customer -> ResponseEntity.ok(Collections.singletonList(customer)))
-                .orElseThrow(() -> new CustomerNotFoundException("Customer with CPF " + cpf + " not found."));
+    @ApiOperation(value = "Export all customers as newline delimited JSON, or as a CBOR or Smile sequence")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully streamed all customers, one after the other")
+    })
+    @GetMapping(value = "/export", produces = {APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> export(
+            @ApiParam(value = "Format of the export, newline delimited JSON unless CBOR or Smile is preferred") @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType mediaType = exportMediaType(accept);
+        ObjectMapper exportMapper = objectMapperFor(mediaType);
+        StreamingResponseBody body = outputStream -> {
+            try (CustomerSequenceWriter writer = new CustomerSequenceWriter(exportMapper, outputStream, EXPORT_FLUSH_INTERVAL)) {
+                customerService.export(writer);
+                log.debug(writer.getWritten() + " customers exported.");
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(body);
+    }
+
+    @ApiOperation(value = "Follow the customers created, updated and deleted as server-sent events")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Streaming the changes in order, each one with its cursor as event ID"),
+            @ApiResponse(code = 410, message = "The changes after the given cursor are no longer retained, the customers must be read again"),
+            @ApiResponse(code = 503, message = "Too many clients follow the changes on this node, retry after the given delay")
+    })
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(
+            @ApiParam(value = "Cursor of the last change received, the changes from now on when not given") @RequestParam(value = "since", required = false) Long since,
+            @ApiParam(value = "Cursor sent by EventSource clients when reconnecting") @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+        return changeFeed.subscribe(since != null ? since : lastEventId);
     }
 
     @ApiOperation(value = "Get a customer by ID")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully retrieved a customer"),
+            @ApiResponse(code = 200, message = "Successfully retrieved a customer, with its version as ETag"),
+            @ApiResponse(code = 304, message = "The customer did not change since the version given in If-None-Match"),
             @ApiResponse(code = 404, message = "The customer you tried to search for by ID was not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Customer> findById(
+    public DeferredResult<ResponseEntity<Customer>> findById(
             @ApiParam(value = "Customer ID which corresponding object will be retrieved") @PathVariable Long id) {
-        return customerService.findById(id)
-                .map(ResponseEntity::ok)
-                .orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id)));
+        // a matching If-None-Match is answered with 304 before the body is serialized
+        return async(timeout, () -> customerService.findById(id)
+                .map(customer -> withETag(ResponseEntity.ok(), customer.getVersion()).body(customer))
+                .orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id))));
+    }
+
+    @ApiOperation(value = "Get only the given fields of a customer by ID")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully retrieved the fields of a customer, with its version as ETag"),
+            @ApiResponse(code = 304, message = "The customer did not change since the version given in If-None-Match"),
+            @ApiResponse(code = 400, message = "Some of the fields do not exist"),
+            @ApiResponse(code = 404, message = "The customer you tried to search for by ID was not found")
+    })
+    @GetMapping(value = "/{id}", params = "fields")
+    public DeferredResult<ResponseEntity<ObjectNode>> findFieldsById(
+            @ApiParam(value = "Customer ID which corresponding object will be retrieved") @PathVariable Long id,
+            @ApiParam(value = "Comma separated customer fields to retrieve, the address is only read when listed") @RequestParam("fields") String fields) {
+        CustomerFields selected = CustomerFields.parse(objectMapper, fields);
+        return async(timeout, () -> {
+            if (selected.includesAddress()) {
+                return customerService.findById(id)
+                        .map(customer -> withETag(ResponseEntity.ok(), customer.getVersion()).body(selected.select(customer)))
+                        .orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id)));
+            }
+            return customerService.findSummaryById(id)
+                    .map(customer -> withETag(ResponseEntity.ok(), customer.getVersion()).body(selected.select(customer)))
+                    .orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id)));
+        });
     }
 
     @ApiOperation(value = "Add a new customer")
@@ -80,33 +324,111 @@ public class CustomerController {
             @ApiResponse(code = 409, message = "Trying to create a customer with an existing CPF resulted in conflict")
     })
     @PostMapping
-    public ResponseEntity<Customer> create(
+    public DeferredResult<ResponseEntity<Customer>> create(
             @ApiParam(value = "New customer object to be stored in database") @Valid @RequestBody Customer customer,
             UriComponentsBuilder builder) {
         Address address = customer.getAddress();
         address.setCustomer(customer);
-        Customer createdCustomer = customerService.save(customer);
-        URI uri = builder.path("/customers/{id}").buildAndExpand(createdCustomer.getId()).toUri();
-        return ResponseEntity.created(uri).body(customer);
+        return async(timeout, () -> {
+            Customer createdCustomer = customerService.save(customer);
+            URI uri = builder.path("/customers/{id}").buildAndExpand(createdCustomer.getId()).toUri();
+            return ResponseEntity.created(uri).body(customer);
+        });
+    }
+
+    @ApiOperation(value = "Add customers in bulk from a JSON array or newline delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Processed the customers, the report tells which were created, invalid or conflicting")
+    })
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
+    public DeferredResult<ResponseEntity<BatchResult>> createBatch(HttpServletRequest request) {
+        ObjectMapper batchMapper = objectMapperFor(MediaType.parseMediaType(request.getContentType()));
+        // imports take as long as the upload, on an executor of their own so that reads are never queued behind them
+        return async(importExecutor, importTimeout, () -> {
+            try (MappingIterator<JsonNode> elements = batchMapper.readerFor(JsonNode.class)
+                    .readValues(request.getInputStream())) {
+                BatchResult result = customerImportService.importCustomers(elements);
+                log.debug(result.getCreated() + " customers created in batch.");
+                return ResponseEntity.ok(result);
+            }
+        });
     }
 
     @ApiOperation(value = "Update an existing customer")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully updated a customer"),
-            @ApiResponse(code = 404, message = "The customer you tried to update by its ID was not found")
+            @ApiResponse(code = 200, message = "Successfully updated a customer, with its new version as ETag"),
+            @ApiResponse(code = 404, message = "The customer you tried to update by its ID was not found"),
+            @ApiResponse(code = 412, message = "The customer changed since the version given in If-Match")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Customer> update(
+    public DeferredResult<ResponseEntity<Customer>> update(
             @ApiParam(value = "Customer ID to update") @PathVariable Long id,
+            @ApiParam(value = "ETag of the customer version the update is based on") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @ApiParam(value = "Updated customer object") @Valid @RequestBody Customer updatedCustomer) {
-        return customerService.findById(id)
+        List<Long> matchingVersions = ETags.matchingVersions(ifMatch);
+        return async(timeout, () -> customerService.update(id,
+                ETags.expectedVersion(matchingVersions, () -> currentVersion(id)), updatedCustomer)
                 .map(customer -> {
-                    updatedCustomer.setId(id);
-                    Address address = updatedCustomer.getAddress();
-                    address.setId(customer.getAddress().getId());
                     log.debug("Customer with ID " + id + " updated.");
-                    return ResponseEntity.ok(customerService.update(updatedCustomer));
-                }).orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id)));
+                    return withETag(ResponseEntity.ok(), customer.getVersion()).body(customer);
+                }).orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id))));
+    }
+
+    @ApiOperation(value = "Create a customer, or replace the one with the given CPF")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully replaced the customer with the given CPF, with its new version as ETag"),
+            @ApiResponse(code = 201, message = "Successfully created a customer with the given CPF, with its version as ETag"),
+            @ApiResponse(code = 400, message = "Some of the parameters in the request body might be invalid, or its CPF differs from the path")
+    })
+    @PutMapping("/by-cpf/{cpf}")
+    public DeferredResult<ResponseEntity<Customer>> upsertByCpf(
+            @ApiParam(value = "CPF of the customer to create or replace") @PathVariable String cpf,
+            @ApiParam(value = "Customer object, its CPF may be omitted") @RequestBody Customer customer,
+            UriComponentsBuilder builder) {
+        if (customer.getCpf() != null && !customer.getCpf().equals(cpf)) {
+            throw new InvalidRequestException("Customer CPF " + customer.getCpf() + " does not match CPF " + cpf + ".");
+        }
+        customer.setCpf(cpf);
+        Set<ConstraintViolation<Customer>> violations = validator.validate(customer);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+
+        customer.getAddress().setCustomer(customer);
+        return async(timeout, () -> {
+            if (customerService.upsertByCpf(customer)) {
+                URI uri = builder.path("/customers/{id}").buildAndExpand(customer.getId()).toUri();
+                return withETag(ResponseEntity.created(uri), customer.getVersion()).body(customer);
+            }
+            log.debug("Customer with CPF " + cpf + " replaced.");
+            return withETag(ResponseEntity.ok(), customer.getVersion()).body(customer);
+        });
+    }
+
+    @ApiOperation(value = "Update only the given fields of an existing customer and its address")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Successfully updated the customer, with its new version as ETag when If-Match was given"),
+            @ApiResponse(code = 400, message = "Some of the given fields might be invalid or cannot be updated"),
+            @ApiResponse(code = 404, message = "The customer you tried to update by its ID was not found"),
+            @ApiResponse(code = 412, message = "The customer changed since the version given in If-Match")
+    })
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_MERGE_PATCH_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
+    public DeferredResult<ResponseEntity<Void>> patch(
+            @ApiParam(value = "Customer ID to update") @PathVariable Long id,
+            @ApiParam(value = "ETag of the customer version the update is based on") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @ApiParam(value = "Customer fields to update") @RequestBody JsonNode patch) {
+        List<Long> matchingVersions = ETags.matchingVersions(ifMatch);
+        CustomerChanges changes = patchReader.read(patch);
+        return async(timeout, () -> {
+            Long expectedVersion = ETags.expectedVersion(matchingVersions, () -> currentVersion(id));
+            if (!customerService.patch(id, expectedVersion, changes)) {
+                throw new CustomerNotFoundException(String.format(ID_NOT_FOUND, id));
+            }
+            log.debug("Customer with ID " + id + " patched.");
+            return withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), expectedVersion == null ? null : expectedVersion + 1).<Void>build();
+        });
     }
 
     @ApiOperation(value = "Delete a customer")
@@ -116,13 +438,124 @@ public class CustomerController {
             @ApiResponse(code = 401, message = "You tried to delete a customer with no proper authentication")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity delete(
+    public DeferredResult<ResponseEntity<Void>> delete(
             @ApiParam(value = "Customer ID from which object will be deleted from database") @PathVariable Long id) {
-        return customerService.findById(id)
-                .map(customer -> {
-                    customerService.deleteById(id);
-                    log.debug("Customer with ID " + id + " deleted.");
-                    return ResponseEntity.ok().build();
-                }).orElseThrow(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id)));
+        return async(timeout, () -> {
+            if (!customerService.deleteById(id)) {
+                throw new CustomerNotFoundException(String.format(ID_NOT_FOUND, id));
+            }
+            log.debug("Customer with ID " + id + " deleted.");
+            return ResponseEntity.ok().<Void>build();
+        });
+    }
+
+    /*
+        Runs the handler on the customer executor, releasing the request
+        thread while it waits for the database. When the executor queue
+        is full TaskRejectedException is thrown right away, requests that
+        timed out while queued are dropped without running, and the ones
+        timing out while running are interrupted.
+    */
+    private <T> DeferredResult<T> async(Duration timeout, Callable<T> handler) {
+        return async(executor, timeout, handler);
+    }
+
+    private static <T> DeferredResult<T> async(TaskExecutor executor, Duration timeout, Callable<T> handler) {
+        DeferredResult<T> result = new DeferredResult<>(timeout.toMillis());
+        // the thread running the handler, guarded by itself
+        Thread[] running = new Thread[1];
+        result.onTimeout(() -> {
+            synchronized (running) {
+                if (running[0] != null) {
+                    running[0].interrupt();
+                }
+            }
+        });
+        executor.execute(() -> {
+            synchronized (running) {
+                if (result.isSetOrExpired()) {
+                    return;
+                }
+                running[0] = Thread.currentThread();
+            }
+            try {
+                result.setResult(handler.call());
+            } catch (Exception e) {
+                result.setErrorResult(e);
+            } finally {
+                synchronized (running) {
+                    running[0] = null;
+                    // an interrupt meant for the handler must not reach the next task of the thread
+                    Thread.interrupted();
+                }
+            }
+        });
+        return result;
+    }
+
+    /*
+        The mapper of the first Jackson converter that reads the media
+        type, so that bodies handled outside of the message converters
+        use the same format. Newline delimited JSON is read as JSON.
+    */
+    private ObjectMapper objectMapperFor(MediaType mediaType) {
+        return jacksonConverters.stream()
+                .filter(converter -> converter.canRead(JsonNode.class, mediaType))
+                .findFirst()
+                .map(AbstractJackson2HttpMessageConverter::getObjectMapper)
+                .orElse(objectMapper);
+    }
+
+    /*
+        The first export format accepted, by specificity and quality,
+        newline delimited JSON when any is.
+    */
+    private static MediaType exportMediaType(String accept) {
+        List<MediaType> accepted = accept == null
+                ? Collections.singletonList(MediaType.ALL)
+                : MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType acceptedType : accepted) {
+            for (MediaType exportType : EXPORT_MEDIA_TYPES) {
+                if (acceptedType.includes(exportType)) {
+                    return exportType;
+                }
+            }
+        }
+        return EXPORT_MEDIA_TYPES.get(0);
+    }
+
+    /*
+        The page with the cursor of the next one, if any, in the
+        X-Next-Cursor header and as a link built on the given URI.
+    */
+    private static <T> ResponseEntity<List<T>> pageResponse(CustomerPage<T> page, UriComponentsBuilder builder) {
+        if (page.getNextCursor() == null) {
+            return ResponseEntity.ok(page.getCustomers());
+        }
+
+        URI next = builder
+                .queryParam("after", page.getNextCursor())
+                .queryParam("limit", page.getCustomers().size())
+                .build().toUri();
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, page.getNextCursor().toString())
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page.getCustomers());
+    }
+
+    /*
+        Version the If-Match of an update is compared with, when it lists
+        several: the one cached or read from the database.
+    */
+    private Long currentVersion(Long id) {
+        return customerService.findById(id).map(Customer::getVersion).orElse(null);
+    }
+
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Long version) {
+        if (version == null) {
+            return builder;
+        }
+        return builder.eTag(ETags.of(version));
     }
 }
@@ -0,0 +1,59 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+class CustomerFields {
+
+    /*
+        The customer fields selected by the fields parameter of the read
+        endpoints, as a comma separated list of JSON property names. Only
+        when the address is selected are the customers read with it,
+        otherwise through the projections without the address join.
+    */
+
+    private static final String ADDRESS = "address";
+    private static final Set<String> FIELDS = new LinkedHashSet<>(Arrays.asList(
+            "id", "firstName", "lastName", "email", "cpf", "dateOfBirth", ADDRESS));
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> selected;
+
+    private CustomerFields(ObjectMapper objectMapper, Set<String> selected) {
+        this.objectMapper = objectMapper;
+        this.selected = selected;
+    }
+
+    static CustomerFields parse(ObjectMapper objectMapper, String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.contains(name)) {
+                throw new InvalidRequestException("Unknown customer field " + name + ", expected some of " + FIELDS + ".");
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) {
+            throw new InvalidRequestException("At least one customer field must be given, expected some of " + FIELDS + ".");
+        }
+        return new CustomerFields(objectMapper, selected);
+    }
+
+    boolean includesAddress() {
+        return selected.contains(ADDRESS);
+    }
+
+    ObjectNode select(Object customer) {
+        ObjectNode node = objectMapper.valueToTree(customer);
+        node.retain(selected);
+        return node;
+    }
+}
@@ -0,0 +1,90 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.dto.CustomerChanges;
+import com.crud.example.customerapi.exception.InvalidRequestException;
+import com.crud.example.customerapi.model.Address;
+import com.crud.example.customerapi.model.Customer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+class CustomerPatchReader {
+
+    /*
+        Reads a partial customer, as in a JSON merge patch: only the fields
+        present in the body are changed and validated, the ID and version
+        cannot be patched. The address is patched the same way.
+    */
+
+    private static final String ADDRESS = "address";
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    CustomerPatchReader(ObjectMapper objectMapper, Validator validator) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    CustomerChanges read(JsonNode body) {
+        if (body == null || !body.isObject() || body.size() == 0) {
+            throw new InvalidRequestException("The patch must be a JSON object with the fields to update.");
+        }
+
+        List<String> customerFields = fieldsOf(body, CustomerChanges.CUSTOMER_FIELDS, ADDRESS);
+        JsonNode addressNode = body.get(ADDRESS);
+        List<String> addressFields = new ArrayList<>();
+        if (addressNode != null) {
+            if (!addressNode.isObject()) {
+                throw new InvalidRequestException("The address patch must be a JSON object.");
+            }
+            addressFields = fieldsOf(addressNode, CustomerChanges.ADDRESS_FIELDS, null);
+        }
+
+        Customer customer;
+        try {
+            customer = objectMapper.treeToValue(body, Customer.class);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException(e.getOriginalMessage());
+        }
+        if (customer.getAddress() == null) {
+            customer.setAddress(new Address());
+        }
+
+        Set<ConstraintViolation<?>> violations = new HashSet<>();
+        for (String field : customerFields) {
+            violations.addAll(validator.validateProperty(customer, field));
+        }
+        for (String field : addressFields) {
+            violations.addAll(validator.validateProperty(customer.getAddress(), field));
+        }
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+
+        return CustomerChanges.of(customer, customerFields, addressFields);
+    }
+
+    private static List<String> fieldsOf(JsonNode node, Set<String> allowed, String nested) {
+        List<String> fields = new ArrayList<>();
+        Iterator<String> names = node.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (allowed.contains(name)) {
+                fields.add(name);
+            } else if (!name.equals(nested)) {
+                throw new InvalidRequestException("Field " + name + " cannot be patched.");
+            }
+        }
+        return fields;
+    }
+}
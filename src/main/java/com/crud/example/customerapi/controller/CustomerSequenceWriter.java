@@ -0,0 +1,66 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.model.Customer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+class CustomerSequenceWriter implements Consumer<Customer>, Closeable {
+
+    /*
+        Writes the customers one after the other, each one ending its
+        line in JSON, or as a sequence of root values in the binary
+        formats. The first customer is flushed right away so the client
+        gets its first byte immediately, afterwards the output is flushed
+        every flushInterval customers instead of on every row.
+    */
+
+    private final ObjectWriter customerWriter;
+    private final JsonGenerator generator;
+    private final boolean lineDelimited;
+    private final int flushInterval;
+    private long written;
+
+    CustomerSequenceWriter(ObjectMapper objectMapper, OutputStream outputStream, int flushInterval) throws IOException {
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        this.lineDelimited = !objectMapper.getFactory().canHandleBinaryNatively();
+        if (lineDelimited) {
+            // the line break is written after each customer, a separator would only go between them
+            generator.setRootValueSeparator(null);
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void accept(Customer customer) {
+        try {
+            customerWriter.writeValue(generator, customer);
+            if (lineDelimited) {
+                generator.writeRaw('\n');
+            }
+            if (++written % flushInterval == 1 || flushInterval == 1) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
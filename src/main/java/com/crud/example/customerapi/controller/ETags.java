@@ -0,0 +1,77 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.exception.PreconditionFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+public final class ETags {
+
+    /*
+        Customer versions exposed as ETags, shared by the servlet and the
+        reactive endpoints.
+    */
+
+    private ETags() {
+    }
+
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /*
+        The versions an update may be applied to, from If-Match: null
+        without it (or with *), the update being unconditional. The
+        header lists ETags, only matched by strong comparison: weak ones
+        and the ones that are no customer version never match, so the
+        precondition fails when nothing else is given.
+    */
+    public static List<Long> matchingVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        List<Long> versions = new ArrayList<>();
+        for (String eTag : ifMatch.split(",")) {
+            eTag = eTag.trim();
+            if (eTag.length() < 2 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+                continue;
+            }
+            try {
+                versions.add(Long.parseLong(eTag.substring(1, eTag.length() - 1)));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new PreconditionFailedException("If-Match " + ifMatch + " matches no customer version.");
+        }
+        return versions;
+    }
+
+    /*
+        The version the update must be applied to, the check itself being
+        part of the update statement. Of several versions, the current one
+        is looked up (null when the customer does not exist): the update
+        is then conditional on it, and still fails if it changes meanwhile.
+    */
+    public static Long expectedVersion(List<Long> versions, Supplier<Long> currentVersion) {
+        if (versions == null) {
+            return null;
+        }
+        if (versions.size() == 1) {
+            return versions.get(0);
+        }
+
+        Long current = currentVersion.get();
+        if (current == null) {
+            // the update finds no customer
+            return versions.get(0);
+        }
+        if (!versions.contains(current)) {
+            throw new PreconditionFailedException("Customer changed since the versions given in If-Match.");
+        }
+        return current;
+    }
+}
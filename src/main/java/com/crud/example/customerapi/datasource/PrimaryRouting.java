@@ -0,0 +1,53 @@
+package com.crud.example.customerapi.datasource;
+
+import java.util.function.Supplier;
+
+public class PrimaryRouting {
+
+    /*
+        Sends the transactions of the current thread to the primary
+        database, read-only ones included (see ReplicaRoutingDataSource).
+        Used for the reads of a client that just wrote, and for the ones
+        that must not miss any write, such as the CPF filter rebuild.
+        Carried over to the executor threads running the request.
+    */
+
+    private static final ThreadLocal<Boolean> FORCED = new ThreadLocal<>();
+
+    private PrimaryRouting() {
+    }
+
+    public static void force() {
+        FORCED.set(Boolean.TRUE);
+    }
+
+    public static void release() {
+        FORCED.remove();
+    }
+
+    public static boolean isForced() {
+        return FORCED.get() != null;
+    }
+
+    public static <T> T call(Supplier<T> action) {
+        if (isForced()) {
+            return action.get();
+        }
+        force();
+        try {
+            return action.get();
+        } finally {
+            release();
+        }
+    }
+
+    public static Runnable decorate(Runnable runnable) {
+        if (!isForced()) {
+            return runnable;
+        }
+        return () -> call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
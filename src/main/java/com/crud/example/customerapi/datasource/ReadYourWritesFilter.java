@@ -0,0 +1,114 @@
+package com.crud.example.customerapi.datasource;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /*
+        Sends the reads of a client to the primary for a while after it
+        sent a write, so that it reads its own writes even if the replicas
+        are behind. The client holds the time of its last write, handed
+        as a cookie and as a response header on the requests that changed
+        a customer (see WriteTracking), so that any node honors it:
+        browsers send the cookie back, other clients may send the header
+        instead. Writes run on the executors, so the time is handed when
+        their response is dispatched. Node clocks are expected to agree
+        within a fraction of the window.
+    */
+
+    public static final String LAST_WRITE_COOKIE = "Last-Write";
+    public static final String LAST_WRITE_HEADER = "X-Last-Write";
+
+    private static final String WRITTEN_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".WRITTEN";
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        if (isAsyncDispatch(request)) {
+            AtomicBoolean written = (AtomicBoolean) request.getAttribute(WRITTEN_ATTRIBUTE);
+            if (written != null && written.get()) {
+                markWrite(response, now);
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (isRead(request) && !wroteRecently(request, now)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        AtomicBoolean written = WriteTracking.track();
+        request.setAttribute(WRITTEN_ATTRIBUTE, written);
+        PrimaryRouting.force();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            PrimaryRouting.release();
+            WriteTracking.untrack();
+        }
+        // a write answered on the request thread, as long as its response is not committed yet
+        if (!isAsyncStarted(request) && written.get() && !response.isCommitted()) {
+            markWrite(response, now);
+        }
+    }
+
+    private void markWrite(HttpServletResponse response, long now) {
+        String value = Long.toString(now);
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+        response.addCookie(cookie);
+        response.setHeader(LAST_WRITE_HEADER, value);
+    }
+
+    private boolean wroteRecently(HttpServletRequest request, long now) {
+        String value = request.getHeader(LAST_WRITE_HEADER);
+        if (value == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                    value = cookie.getValue();
+                }
+            }
+        }
+        if (value == null) {
+            return false;
+        }
+
+        long lastWrite;
+        try {
+            lastWrite = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        // a write on a node whose clock is ahead may look like it is yet to come
+        return Math.abs(now - lastWrite) < windowMillis;
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
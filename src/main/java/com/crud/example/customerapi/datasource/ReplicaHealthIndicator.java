@@ -0,0 +1,32 @@
+package com.crud.example.customerapi.datasource;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.scheduling.annotation.Scheduled;
+
+public class ReplicaHealthIndicator extends AbstractHealthIndicator {
+
+    /*
+        Checks the replicas periodically, putting the ones that answer
+        back in rotation, and reports which are up. Reads fall back to the
+        primary while replicas are down, so the application stays up.
+    */
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    public ReplicaHealthIndicator(ReplicaRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Scheduled(fixedDelayString = "${customer.datasource.replica-health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        routingDataSource.checkReplicas();
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        routingDataSource.getReplicaHealth()
+                .forEach((replica, healthy) -> builder.withDetail(replica, healthy ? "UP" : "DOWN"));
+        builder.up();
+    }
+}
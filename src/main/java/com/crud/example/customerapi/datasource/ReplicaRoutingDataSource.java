@@ -0,0 +1,146 @@
+package com.crud.example.customerapi.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    /*
+        Hands out connections to one of the healthy replicas, in turns,
+        for read-only transactions, and to the primary for everything
+        else. Replicas are only read once a health check found them up,
+        and one failing to give a connection is marked down until the
+        next check, meanwhile reads go to the other replicas or to the
+        primary. Must sit behind a LazyConnectionDataSourceProxy,
+        so that connections are only taken once the transaction has
+        started and is known to be read-only. A replica whose pool is
+        only busy is not marked down, that read alone goes to the
+        primary.
+    */
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PrimaryRouting.isForced()) {
+            return primary.getConnection();
+        }
+
+        Replica replica = nextHealthyReplica();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            if (isPoolExhausted(e)) {
+                log.debug("Replica " + replica.name + " has no connection available, reading from the primary.", e);
+            } else {
+                replica.healthy = false;
+                log.warn("Replica " + replica.name + " is down, reading from the primary until it is back.", e);
+            }
+            return primary.getConnection();
+        }
+    }
+
+    /*
+        Replicas share the credentials of the primary, connections for
+        other users only come from the primary.
+    */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /*
+        Hikari times out waiting for a connection either way, with the
+        last failure to connect as cause when the replica could not be
+        reached or its connections failed validation.
+    */
+    private static boolean isPoolExhausted(Exception e) {
+        return e instanceof SQLTransientConnectionException && e.getCause() == null;
+    }
+
+    private Replica nextHealthyReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException | RuntimeException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                log.info("Replica " + replica.name + " is " + (healthy ? "up" : "down") + ".");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    public Map<String, Boolean> getReplicaHealth() {
+        Map<String, Boolean> health = new LinkedHashMap<>();
+        replicas.forEach(replica -> health.put(replica.name, replica.healthy));
+        return health;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+        close(primary);
+    }
+
+    private static void close(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+
+    private static class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        // replicas join once a health check finds them up
+        private volatile boolean healthy;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
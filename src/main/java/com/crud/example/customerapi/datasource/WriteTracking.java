@@ -0,0 +1,64 @@
+package com.crud.example.customerapi.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class WriteTracking {
+
+    /*
+        Tracks whether the request of the current thread changed any
+        customer, once its transaction commits, so that
+        ReadYourWritesFilter only hands the time of a write to the
+        clients whose write succeeded. Carried over to the executor
+        threads running the request.
+    */
+
+    private static final ThreadLocal<AtomicBoolean> WRITTEN = new ThreadLocal<>();
+
+    private WriteTracking() {
+    }
+
+    static AtomicBoolean track() {
+        AtomicBoolean written = new AtomicBoolean();
+        WRITTEN.set(written);
+        return written;
+    }
+
+    static void untrack() {
+        WRITTEN.remove();
+    }
+
+    public static void written() {
+        AtomicBoolean written = WRITTEN.get();
+        if (written == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            written.set(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                written.set(true);
+            }
+        });
+    }
+
+    public static Runnable decorate(Runnable runnable) {
+        AtomicBoolean written = WRITTEN.get();
+        if (written == null) {
+            return runnable;
+        }
+        return () -> {
+            WRITTEN.set(written);
+            try {
+                runnable.run();
+            } finally {
+                WRITTEN.remove();
+            }
+        };
+    }
+}
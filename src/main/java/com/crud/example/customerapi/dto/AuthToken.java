@@ -0,0 +1,16 @@
+package com.crud.example.customerapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AuthToken {
+
+    private String token;
+
+    private String tokenType;
+
+    // seconds
+    private long expiresIn;
+}
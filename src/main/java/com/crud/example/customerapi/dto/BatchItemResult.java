@@ -0,0 +1,28 @@
+package com.crud.example.customerapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    public enum Status {
+        CREATED, INVALID, CONFLICT
+    }
+
+    /*
+        Zero based position of the item in the request body.
+    */
+    private int index;
+
+    private Status status;
+
+    private Long id;
+
+    private String cpf;
+
+    private String message;
+}
@@ -0,0 +1,42 @@
+package com.crud.example.customerapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private int created;
+
+    private int invalid;
+
+    private int conflicts;
+
+    /*
+        Set when the request body could not be parsed any further, or
+        the import was interrupted, items before that point were
+        already processed.
+    */
+    private String error;
+
+    private List<BatchItemResult> items = new ArrayList<>();
+
+    public void add(BatchItemResult item) {
+        switch (item.getStatus()) {
+            case CREATED:
+                created++;
+                break;
+            case INVALID:
+                invalid++;
+                break;
+            case CONFLICT:
+                conflicts++;
+                break;
+        }
+        items.add(item);
+    }
+}
@@ -0,0 +1,60 @@
+package com.crud.example.customerapi.dto;
+
+import com.crud.example.customerapi.model.Customer;
+import lombok.Data;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+public class CustomerChanges {
+
+    /*
+        New values of the updatable customer and address fields, keyed by
+        property name, applied with bulk updates instead of loading and
+        merging the entities.
+    */
+
+    public static final Set<String> CUSTOMER_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("firstName", "lastName", "email", "cpf", "dateOfBirth")));
+
+    public static final Set<String> ADDRESS_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("street", "number", "zipCode", "complement", "neighbourhood", "city", "uf")));
+
+    private final Map<String, Object> customer = new LinkedHashMap<>();
+
+    private final Map<String, Object> address = new LinkedHashMap<>();
+
+    /*
+        Every field of the customer and its address, for full updates.
+    */
+    public static CustomerChanges of(Customer customer) {
+        return of(customer, CUSTOMER_FIELDS, ADDRESS_FIELDS);
+    }
+
+    public static CustomerChanges of(Customer customer, Collection<String> customerFields, Collection<String> addressFields) {
+        CustomerChanges changes = new CustomerChanges();
+        BeanWrapper customerWrapper = PropertyAccessorFactory.forBeanPropertyAccess(customer);
+        for (String field : customerFields) {
+            changes.customer.put(field, customerWrapper.getPropertyValue(field));
+        }
+        if (!addressFields.isEmpty()) {
+            BeanWrapper addressWrapper = PropertyAccessorFactory.forBeanPropertyAccess(customer.getAddress());
+            for (String field : addressFields) {
+                changes.address.put(field, addressWrapper.getPropertyValue(field));
+            }
+        }
+        return changes;
+    }
+
+    public String getCpf() {
+        return (String) customer.get("cpf");
+    }
+}
@@ -0,0 +1,21 @@
+package com.crud.example.customerapi.dto;
+
+import com.crud.example.customerapi.model.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CustomerLookup {
+
+    /*
+        The customers found by a lookup of several IDs, in the order they
+        were requested, and the requested IDs that were not found.
+    */
+
+    private List<Customer> customers;
+
+    private List<Long> missingIds;
+}
@@ -0,0 +1,27 @@
+package com.crud.example.customerapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Data
+@AllArgsConstructor
+public class CustomerPage<T> {
+
+    /*
+        A slice of customers, or of their projections, ordered by ID.
+        The next cursor is the last ID of the slice, or null when there
+        are no more customers after it.
+    */
+
+    private List<T> customers;
+
+    private Long nextCursor;
+
+    public <R> CustomerPage<R> map(Function<? super T, R> mapper) {
+        return new CustomerPage<>(customers.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+}
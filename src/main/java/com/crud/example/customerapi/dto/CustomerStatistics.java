@@ -0,0 +1,25 @@
+package com.crud.example.customerapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class CustomerStatistics {
+
+    /*
+        Customer counts by state, by city within each state, and by age
+        bracket. Customers without an address or a date of birth are in
+        the total only.
+    */
+
+    private int total;
+
+    private Map<String, Integer> byUf;
+
+    private Map<String, Map<String, Integer>> byCity;
+
+    private Map<String, Integer> byAgeBracket;
+}
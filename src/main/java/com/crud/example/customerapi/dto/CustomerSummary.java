@@ -0,0 +1,41 @@
+package com.crud.example.customerapi.dto;
+
+import com.crud.example.customerapi.model.Customer;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+public class CustomerSummary {
+
+    /*
+        The columns of a customer without its address, read by the
+        CustomerRepository projections that skip the address join. Its
+        JSON is the customer's own, minus the address.
+    */
+
+    private Long id;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String cpf;
+
+    @JsonFormat(pattern = "dd-MM-yyyy")
+    private Date dateOfBirth;
+
+    @JsonIgnore
+    private Long version;
+
+    public static CustomerSummary of(Customer customer) {
+        return new CustomerSummary(customer.getId(), customer.getFirstName(), customer.getLastName(),
+                customer.getEmail(), customer.getCpf(), customer.getDateOfBirth(), customer.getVersion());
+    }
+}
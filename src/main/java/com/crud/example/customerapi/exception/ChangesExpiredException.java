@@ -0,0 +1,17 @@
+package com.crud.example.customerapi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.GONE)
+public class ChangesExpiredException extends RuntimeException {
+
+    /*
+        Thrown when a change feed is resumed from a cursor older than the
+        retained changes: the client has to read the customers again
+        before following the feed. No stack trace either.
+    */
+    public ChangesExpiredException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -6,7 +6,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class CustomerNotFoundException extends RuntimeException {
 
+    /*
+        Not found is an expected outcome of lookups, not a failure,
+        so the exception skips filling in its stack trace.
+    */
     public CustomerNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
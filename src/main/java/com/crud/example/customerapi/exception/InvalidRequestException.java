@@ -0,0 +1,16 @@
+package com.crud.example.customerapi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRequestException extends RuntimeException {
+
+    /*
+        Thrown when the request cannot be applied as given, for example
+        a patch of a field that does not exist. No stack trace either.
+    */
+    public InvalidRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
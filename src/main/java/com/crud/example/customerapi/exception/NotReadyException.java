@@ -0,0 +1,13 @@
+package com.crud.example.customerapi.exception;
+
+public class NotReadyException extends RuntimeException {
+
+    /*
+        Thrown by the endpoints served from memory, such as the search,
+        until what they read is first built, answered with 503 and
+        Retry-After. No stack trace either.
+    */
+    public NotReadyException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,16 @@
+package com.crud.example.customerapi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+
+    /*
+        Thrown when a conditional request does not match the current
+        version of the customer. Expected outcome, so no stack trace.
+    */
+    public PreconditionFailedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -1,18 +1,27 @@
 package com.crud.example.customerapi.exception;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestControllerAdvice
 public class ResponseEntityExceptionHandler {
 
+    @Value("${customer.executor.retry-after:1s}")
+    private Duration retryAfter;
+
     /*
         Handle a Constraint Violation to return a
         Bad Request instead of Internal Server Error,
@@ -37,5 +46,53 @@ public class ResponseEntityExceptionHandler {
         String errorMessage = exception.getMessage();
         return new ResponseEntity<>(errorMessage, HttpStatus.CONFLICT);
     }
-}
 
+    /*
+        Handle an Optimistic Locking Failure to return a
+        Precondition Failed instead of Internal Server Error,
+        used when the customer was updated by someone else since
+        the version the update was based on.
+    */
+    @ExceptionHandler
+    public ResponseEntity<Object> handle(OptimisticLockingFailureException exception) {
+        String errorMessage = "Customer was modified since the version the update was based on.";
+        return new ResponseEntity<>(errorMessage, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /*
+        Handle a Rejected Execution to return a
+        Service Unavailable instead of Internal Server Error,
+        used when the request executor queue is full, so that
+        clients back off instead of waiting on a saturated database.
+    */
+    @ExceptionHandler
+    public ResponseEntity<Object> handle(RejectedExecutionException exception) {
+        return serviceUnavailable("Too many concurrent requests, try again later.");
+    }
+
+    /*
+        Handle an Async Request Timeout to return a
+        Service Unavailable with Retry-After, used when a request
+        waited too long for the request executor or the database.
+    */
+    @ExceptionHandler
+    public ResponseEntity<Object> handle(AsyncRequestTimeoutException exception) {
+        return serviceUnavailable("The request timed out, try again later.");
+    }
+
+    /*
+        Handle a Not Ready to return a Service Unavailable with
+        Retry-After, used while the search index and the statistics
+        are built at startup.
+    */
+    @ExceptionHandler
+    public ResponseEntity<Object> handle(NotReadyException exception) {
+        return serviceUnavailable(exception.getMessage());
+    }
+
+    private ResponseEntity<Object> serviceUnavailable(String errorMessage) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.getSeconds())))
+                .body(errorMessage);
+    }
+}
@@ -1,6 +1,7 @@
 package com.crud.example.customerapi.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.Data;
 import org.hibernate.validator.constraints.br.CPF;
@@ -13,6 +14,9 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+import javax.validation.Valid;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -24,7 +28,8 @@ import java.util.Date;
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -47,10 +52,21 @@ public class Customer {
     @JsonFormat(pattern = "dd-MM-yyyy")
     private Date dateOfBirth;
 
+    /*
+        Incremented on every update, exposed as the ETag of the customer
+        instead of in its body.
+    */
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    @JsonIgnore
+    private Long version;
+
     @OneToOne(mappedBy = "customer",
             fetch = FetchType.LAZY,
             cascade = CascadeType.ALL)
     @JsonManagedReference
+    @NotNull
+    @Valid
     private Address address;
     
 }
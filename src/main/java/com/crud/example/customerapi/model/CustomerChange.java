@@ -0,0 +1,45 @@
+package com.crud.example.customerapi.model;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.Date;
+
+@Data
+@Entity
+@Table(indexes = @Index(columnList = "changedAt"))
+public class CustomerChange {
+
+    /*
+        Entry of the customer change log, written in the transaction of
+        the change itself. IDs come from an identity column, one at a
+        time, so they follow the order the changes were made in on every
+        node and serve as the cursor of the change feed.
+    */
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Type type;
+
+    @Column(nullable = false)
+    private Date changedAt;
+}
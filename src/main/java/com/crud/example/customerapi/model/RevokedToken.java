@@ -0,0 +1,44 @@
+package com.crud.example.customerapi.model;
+
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.Date;
+
+@Data
+@Entity
+@Table(indexes = {@Index(columnList = "revokedAt"), @Index(columnList = "expiresAt")})
+public class RevokedToken implements Persistable<String> {
+
+    /*
+        Bearer token revoked on some node, read by every node so that it
+        is refused everywhere. Kept until the token would have expired
+        anyway. Only ever inserted: always new, so that saving it persists
+        it instead of selecting it first, as its ID is assigned.
+    */
+
+    @Id
+    @Column(length = 36)
+    private String tokenId;
+
+    @Column(nullable = false)
+    private Date revokedAt;
+
+    @Column(nullable = false)
+    private Date expiresAt;
+
+    @Override
+    public String getId() {
+        return tokenId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
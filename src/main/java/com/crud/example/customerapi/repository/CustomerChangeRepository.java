@@ -0,0 +1,32 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.model.CustomerChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface CustomerChangeRepository extends JpaRepository<CustomerChange, Long> {
+
+    List<CustomerChange> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<CustomerChange> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    @Query("select c from CustomerChange c where c.id > :after and c.id <= :upTo order by c.id")
+    List<CustomerChange> findBetween(@Param("after") Long after, @Param("upTo") Long upTo, Pageable pageable);
+
+    @Query("select min(c.id) from CustomerChange c")
+    Long findFirstId();
+
+    @Query("select max(c.id) from CustomerChange c where c.changedAt < :before")
+    Long findLastIdBefore(@Param("before") Date before);
+
+    @Modifying
+    @Query("delete from CustomerChange c where c.changedAt < :before")
+    int deleteChangedBefore(@Param("before") Date before);
+}
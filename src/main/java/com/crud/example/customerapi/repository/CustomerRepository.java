@@ -1,10 +1,116 @@
 package com.crud.example.customerapi.repository;
 
+import com.crud.example.customerapi.dto.CustomerSummary;
 import com.crud.example.customerapi.model.Customer;
-import org.springframework.data.repository.CrudRepository;
+import com.crud.example.customerapi.search.IndexedCustomer;
+import com.crud.example.customerapi.stats.CountedCustomer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerRepositoryCustom {
+
+    /*
+        Customer.address is the inverse side of a one-to-one, which
+        Hibernate cannot proxy, so it would be loaded with one extra
+        select per customer. Every read fetches it in the same query,
+        with a fetch join rather than an entity graph: Hibernate builds a
+        new loader for every find with a graph, costing milliseconds.
+    */
+
+    @Override
+    @Query("select c from Customer c left join fetch c.address where c.id = :id")
+    Optional<Customer> findById(@Param("id") Long id);
+
+    @Query("select c from Customer c left join fetch c.address where c.cpf = :cpf")
+    Optional<Customer> findByCpf(@Param("cpf") String document);
+
+    @Query("select c from Customer c left join fetch c.address where c.id in :ids")
+    List<Customer> findByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select c from Customer c left join fetch c.address where c.id > :id order by c.id")
+    List<Customer> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Pageable pageable);
+
+    /*
+        Projections of the customer columns alone, for the reads that
+        don't need the address, so it is neither joined nor loaded.
+    */
+    String SUMMARY = "select new com.crud.example.customerapi.dto.CustomerSummary("
+            + "c.id, c.firstName, c.lastName, c.email, c.cpf, c.dateOfBirth, c.version) from Customer c";
+
+    @Query(SUMMARY + " where c.id = :id")
+    Optional<CustomerSummary> findSummaryById(@Param("id") Long id);
+
+    @Query(SUMMARY + " where c.cpf = :cpf")
+    Optional<CustomerSummary> findSummaryByCpf(@Param("cpf") String document);
+
+    @Query(SUMMARY + " where c.id > :id order by c.id")
+    List<CustomerSummary> findSummaryByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Pageable pageable);
+
+    /*
+        The searched fields alone, for the search index.
+    */
+    String INDEXED = "select new com.crud.example.customerapi.search.IndexedCustomer("
+            + "c.id, c.firstName, c.lastName, c.email, a.city, a.uf) from Customer c left join c.address a";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(INDEXED)
+    Stream<IndexedCustomer> streamIndexed();
+
+    @Query(INDEXED + " where c.id in :ids")
+    List<IndexedCustomer> findIndexedByIdIn(@Param("ids") Collection<Long> ids);
+
+    String COUNTED = "select new com.crud.example.customerapi.stats.CountedCustomer("
+            + "c.id, a.uf, a.city, c.dateOfBirth) from Customer c left join c.address a";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(COUNTED)
+    Stream<CountedCustomer> streamCounted();
+
+    @Query(COUNTED + " where c.id in :ids")
+    List<CountedCustomer> findCountedByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select c.cpf from Customer c where c.cpf in :cpfs")
+    Set<String> findCpfByCpfIn(@Param("cpfs") Collection<String> cpfs);
+
+    /*
+        Streams every customer with its address through a server side
+        cursor (the PostgreSQL driver only honours the fetch size inside
+        a transaction). Must be consumed inside a transaction and closed.
+    */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select c from Customer c left join fetch c.address order by c.id")
+    Stream<Customer> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select c.cpf from Customer c")
+    Stream<String> streamAllCpfs();
 
-public interface CustomerRepository extends CrudRepository<Customer, Long> {
+    /*
+        Deleting without loading the customer first, the number of
+        deleted customers tells whether it existed.
+    */
+    @Modifying
+    @Query("delete from Address a where a.customer.id = :customerId")
+    int deleteAddressByCustomerId(@Param("customerId") Long customerId);
 
-    Optional<Customer> findByCpf(String document);
+    @Modifying
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(@Param("id") Long id);
 }
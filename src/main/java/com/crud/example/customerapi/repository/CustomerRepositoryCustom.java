@@ -0,0 +1,31 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.model.Customer;
+
+import java.util.Map;
+
+public interface CustomerRepositoryCustom {
+
+    /*
+        Sets the given fields and increments the version of the customer
+        in a single statement. Returns the number of updated customers.
+    */
+    int updateCustomer(Long id, Map<String, Object> changes);
+
+    /*
+        Same, only if its version is the expected one: the statement
+        writes the next version itself, which is returned, null when no
+        customer was updated.
+    */
+    Long updateCustomer(Long id, long expectedVersion, Map<String, Object> changes);
+
+    int updateAddress(Long customerId, Map<String, Object> changes);
+
+    /*
+        Inserts the customer with its address, or updates both when its
+        CPF is already stored, in a single atomic statement. Sets the
+        resulting IDs and version on the given customer and returns
+        whether it was inserted.
+    */
+    boolean upsertByCpf(Customer customer);
+}
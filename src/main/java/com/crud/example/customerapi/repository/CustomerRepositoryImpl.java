@@ -0,0 +1,135 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.model.Address;
+import com.crud.example.customerapi.model.Customer;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.hibernate.type.TimestampType;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.util.Map;
+
+class CustomerRepositoryImpl implements CustomerRepositoryCustom {
+
+    /*
+        PostgreSQL upsert of the customer chained to the upsert of its
+        address. The IDs of new rows are taken beforehand from the
+        entities' own generators, so that the sequences keep a single
+        allocator: a nextval here could return a value of a block that
+        Hibernate has read but not handed out yet, and would burn a whole
+        block per statement. The IDs taken for rows that already exist
+        are left unused. xmax is only zero on rows inserted by the
+        statement.
+    */
+    private static final String UPSERT_BY_CPF =
+            "with upserted_customer as ("
+            + " insert into customer (id, first_name, last_name, email, cpf, date_of_birth, version)"
+            + " values (:customerId, :firstName, :lastName, :email, :cpf, :dateOfBirth, 0)"
+            + " on conflict (cpf) do update set first_name = excluded.first_name, last_name = excluded.last_name,"
+            + " email = excluded.email, date_of_birth = excluded.date_of_birth, version = customer.version + 1"
+            + " returning id, version, xmax = 0 as inserted"
+            + "), upserted_address as ("
+            + " insert into address (id, street, number, zip_code, complement, neighbourhood, city, uf, customer_id)"
+            + " select :addressId, :street, :number, :zipCode, :complement, :neighbourhood, :city, :uf, id"
+            + " from upserted_customer"
+            + " on conflict (customer_id) do update set street = excluded.street, number = excluded.number,"
+            + " zip_code = excluded.zip_code, complement = excluded.complement,"
+            + " neighbourhood = excluded.neighbourhood, city = excluded.city, uf = excluded.uf"
+            + " returning id"
+            + ")"
+            + " select c.id as customer_id, c.version, c.inserted, a.id as address_id"
+            + " from upserted_customer c cross join upserted_address a";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateCustomer(Long id, Map<String, Object> changes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Customer> update = builder.createCriteriaUpdate(Customer.class);
+        Root<Customer> customer = update.from(Customer.class);
+
+        changes.forEach(update::set);
+        Path<Long> version = customer.get("version");
+        update.set(version, builder.sum(version, 1L));
+        update.where(builder.equal(customer.get("id"), id));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public Long updateCustomer(Long id, long expectedVersion, Map<String, Object> changes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Customer> update = builder.createCriteriaUpdate(Customer.class);
+        Root<Customer> customer = update.from(Customer.class);
+
+        changes.forEach(update::set);
+        Path<Long> version = customer.get("version");
+        Long nextVersion = expectedVersion + 1;
+        update.set(version, nextVersion);
+        update.where(builder.equal(customer.get("id"), id), builder.equal(version, expectedVersion));
+
+        return entityManager.createQuery(update).executeUpdate() == 0 ? null : nextVersion;
+    }
+
+    @Override
+    public int updateAddress(Long customerId, Map<String, Object> changes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Address> update = builder.createCriteriaUpdate(Address.class);
+        Root<Address> address = update.from(Address.class);
+
+        changes.forEach(update::set);
+        update.where(builder.equal(address.get("customer").get("id"), customerId));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public boolean upsertByCpf(Customer customer) {
+        Address address = customer.getAddress();
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        Object[] row = (Object[]) entityManager.createNativeQuery(UPSERT_BY_CPF)
+                .unwrap(NativeQuery.class)
+                .setParameter("customerId", nextId(session, Customer.class, customer), LongType.INSTANCE)
+                .setParameter("addressId", nextId(session, Address.class, address), LongType.INSTANCE)
+                // typed, so that null values are not bound as binary
+                .setParameter("firstName", customer.getFirstName(), StringType.INSTANCE)
+                .setParameter("lastName", customer.getLastName(), StringType.INSTANCE)
+                .setParameter("email", customer.getEmail(), StringType.INSTANCE)
+                .setParameter("cpf", customer.getCpf(), StringType.INSTANCE)
+                .setParameter("dateOfBirth", customer.getDateOfBirth(), TimestampType.INSTANCE)
+                .setParameter("street", address.getStreet(), StringType.INSTANCE)
+                .setParameter("number", address.getNumber(), IntegerType.INSTANCE)
+                .setParameter("zipCode", address.getZipCode(), StringType.INSTANCE)
+                .setParameter("complement", address.getComplement(), StringType.INSTANCE)
+                .setParameter("neighbourhood", address.getNeighbourhood(), StringType.INSTANCE)
+                .setParameter("city", address.getCity(), StringType.INSTANCE)
+                .setParameter("uf", address.getUf(), StringType.INSTANCE)
+                .addScalar("customer_id", LongType.INSTANCE)
+                .addScalar("version", LongType.INSTANCE)
+                .addScalar("inserted", BooleanType.INSTANCE)
+                .addScalar("address_id", LongType.INSTANCE)
+                .getSingleResult();
+
+        customer.setId((Long) row[0]);
+        customer.setVersion((Long) row[1]);
+        address.setId((Long) row[3]);
+        address.setCustomer(customer);
+        return (Boolean) row[2];
+    }
+
+    private static Long nextId(SharedSessionContractImplementor session, Class<?> entityClass, Object entity) {
+        return (Long) session.getFactory().getMetamodel().entityPersister(entityClass)
+                .getIdentifierGenerator().generate(session, entity);
+    }
+}
@@ -0,0 +1,20 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    @Query("select r.tokenId from RevokedToken r where r.revokedAt >= :since and r.expiresAt > :now")
+    List<String> findRevokedSince(@Param("since") Date since, @Param("now") Date now);
+
+    @Modifying
+    @Query("delete from RevokedToken r where r.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") Date before);
+}
@@ -0,0 +1,52 @@
+package com.crud.example.customerapi.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "customer.schema.align-sequences", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SequenceAlignment {
+
+    /*
+        Moves the ID sequences past the IDs already stored, on startup,
+        once the schema is updated (hence the entity manager factory) and
+        before any insert: the schema update creates them starting at 1
+        on a database created by a previous version, and their first
+        blocks of IDs would collide with the stored ones. A sequence is
+        only ever moved forward, when behind the greatest stored ID, so
+        that every later start leaves it alone and a node already
+        allocating from it is never handed an ID twice. PostgreSQL only,
+        turned off for the tests on H2.
+    */
+    // the value next handed by the sequence is last_value itself as long as it was never called
+    private static final String ALIGN = "select setval('%1$s', (select max(id) from %2$s)) from %1$s"
+            + " where last_value - case when is_called then 0 else 1 end < (select max(id) from %2$s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SequenceAlignment(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void align() {
+        align("customer_seq", "customer");
+        align("address_seq", "address");
+    }
+
+    void align(String sequence, String table) {
+        List<Long> aligned = jdbcTemplate.queryForList(String.format(ALIGN, sequence, table), Long.class);
+        if (!aligned.isEmpty()) {
+            log.info("Sequence " + sequence + " moved to " + aligned.get(0) + ", past the IDs stored in " + table + ".");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.crud.example.customerapi.search;
+
+import com.crud.example.customerapi.changes.CustomerChangeFeed;
+import com.crud.example.customerapi.changes.CustomerChangeFollower;
+import com.crud.example.customerapi.exception.NotReadyException;
+import com.crud.example.customerapi.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Component
+@Slf4j
+public class CustomerSearch extends CustomerChangeFollower<CustomerSearchIndex, IndexedCustomer> {
+
+    /*
+        Keeps the search index of this node, built at startup and then
+        following the change log (see CustomerChangeFollower). Also
+        rebuilt periodically, in case a change was missed.
+    */
+
+    private final CustomerRepository repository;
+
+    @Value("${customer.search.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CustomerSearch(CustomerRepository repository, PlatformTransactionManager transactionManager,
+                          CustomerChangeFeed changeFeed) {
+        super("customer-search", transactionManager, changeFeed);
+        this.repository = repository;
+    }
+
+    public long[] search(String query, int limit) {
+        CustomerSearchIndex current = state();
+        if (current == null) {
+            throw new NotReadyException("The search index is not built yet, try again later.");
+        }
+        return current.search(query, limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Search index could not be built, searches are unavailable until the next rebuild.", e);
+        }
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${customer.search.rebuild-interval-ms:86400000}",
+            fixedDelayString = "${customer.search.rebuild-interval-ms:86400000}")
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected CustomerSearchIndex newState() {
+        return new CustomerSearchIndex();
+    }
+
+    @Override
+    protected Stream<IndexedCustomer> streamAll() {
+        return repository.streamIndexed();
+    }
+
+    @Override
+    protected List<IndexedCustomer> findByIdIn(List<Long> ids) {
+        return repository.findIndexedByIdIn(ids);
+    }
+
+    @Override
+    protected Long idOf(IndexedCustomer customer) {
+        return customer.getId();
+    }
+
+    @Override
+    protected void put(CustomerSearchIndex index, IndexedCustomer customer) {
+        index.put(customer.getId(), customer.getFirstName(), customer.getLastName(), customer.getEmail(),
+                customer.getCity(), customer.getUf());
+    }
+
+    @Override
+    protected void remove(CustomerSearchIndex index, Long id) {
+        index.remove(id);
+    }
+
+    @Override
+    protected void replaced(CustomerSearchIndex previous, CustomerSearchIndex built, Set<Long> changedWhileBuilding) {
+        log.debug("Search index rebuilt for " + built.size() + " customers.");
+    }
+}
@@ -0,0 +1,325 @@
+package com.crud.example.customerapi.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+public class CustomerSearchIndex {
+
+    /*
+        In-memory inverted index over the customer names, email, city
+        and state. Values are split into words, lower cased and without
+        accents, each word of each field mapping to the sorted IDs of
+        its customers in a primitive array. Prefixes are found in the
+        sorted words. Substrings are found through the trigrams of the
+        words: only the words holding the rarest trigram of the query
+        word are checked, neither every word nor the customers.
+
+        A customer matches when every word of the query matches one of
+        its words, scored by how (exact word, prefix or substring) and
+        where (names over email over address) it matched. Searches run
+        concurrently, changes one at a time.
+    */
+
+    enum Field {
+        FIRST_NAME(3), LAST_NAME(3), EMAIL(2), CITY(1), UF(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int CONTAINS = 1;
+    private static final int MAX_QUERY_WORDS = 8;
+    // shorter substrings match too many words to be useful
+    private static final int MIN_CONTAINS_LENGTH = 3;
+    private static final int MAX_SCORE = MAX_QUERY_WORDS * EXACT * 3;
+    // scores of a single word fit in the low bits of its matches
+    private static final int SCORE_BITS = 4;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<Field, NavigableMap<String, LongPostings>> words = new EnumMap<>(Field.class);
+    // distinct words of each field by the trigrams they hold
+    private final Map<Field, Map<String, Set<String>>> trigrams = new EnumMap<>(Field.class);
+    // words of each customer, needed to remove it, the fields separated by nulls
+    private final LongObjectMap<String[]> documents = new LongObjectMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CustomerSearchIndex() {
+        for (Field field : Field.values()) {
+            words.put(field, new TreeMap<>());
+            trigrams.put(field, new HashMap<>());
+        }
+    }
+
+    /*
+        Indexes the customer, replacing what was indexed for its ID.
+    */
+    public void put(long id, String firstName, String lastName, String email, String city, String uf) {
+        String[] values = {firstName, lastName, email, city, uf};
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            List<String> document = new ArrayList<>();
+            for (Field field : Field.values()) {
+                NavigableMap<String, LongPostings> fieldWords = words.get(field);
+                for (String word : words(values[field.ordinal()])) {
+                    LongPostings postings = fieldWords.get(word);
+                    if (postings == null) {
+                        postings = new LongPostings();
+                        fieldWords.put(word, postings);
+                        addTrigrams(field, word);
+                    } else {
+                        // the instance already in the dictionary, not one more copy
+                        word = fieldWords.floorKey(word);
+                    }
+                    postings.add(id);
+                    document.add(word);
+                }
+                document.add(null);
+            }
+            documents.put(id, document.toArray(new String[0]));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        IDs of the customers matching every word of the query, best
+        scores first, then lowest IDs.
+    */
+    public long[] search(String query, int limit) {
+        List<String> queryWords = new ArrayList<>(words(query));
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        queryWords = queryWords.subList(0, Math.min(queryWords.size(), MAX_QUERY_WORDS));
+
+        long[] ids = null;
+        int[] scores = null;
+        lock.readLock().lock();
+        try {
+            for (String word : queryWords) {
+                long[] matches = matches(word);
+                if (ids == null) {
+                    ids = new long[matches.length];
+                    scores = new int[matches.length];
+                    for (int i = 0; i < matches.length; i++) {
+                        ids[i] = matches[i] >>> SCORE_BITS;
+                        scores[i] = (int) (matches[i] & ((1 << SCORE_BITS) - 1));
+                    }
+                } else {
+                    int count = intersect(ids, scores, matches);
+                    ids = Arrays.copyOf(ids, count);
+                    scores = Arrays.copyOf(scores, count);
+                }
+                if (ids.length == 0) {
+                    return ids;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top(ids, scores, limit);
+    }
+
+    /*
+        Customers matching the word in any field, as their ID shifted
+        left with the best score in the low bits, sorted by ID.
+    */
+    private long[] matches(String word) {
+        List<LongPostings> postings = new ArrayList<>();
+        List<Integer> postingScores = new ArrayList<>();
+        int total = 0;
+        for (Field field : Field.values()) {
+            NavigableMap<String, LongPostings> fieldWords = words.get(field);
+            for (Map.Entry<String, LongPostings> entry : fieldWords.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                postings.add(entry.getValue());
+                postingScores.add(field.weight * (entry.getKey().equals(word) ? EXACT : PREFIX));
+                total += entry.getValue().size();
+            }
+            if (word.length() >= MIN_CONTAINS_LENGTH) {
+                for (String candidate : candidates(field, word)) {
+                    if (!candidate.startsWith(word) && candidate.contains(word)) {
+                        LongPostings candidatePostings = fieldWords.get(candidate);
+                        postings.add(candidatePostings);
+                        postingScores.add(field.weight * CONTAINS);
+                        total += candidatePostings.size();
+                    }
+                }
+            }
+        }
+
+        long[] matches = new long[total];
+        int count = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            LongPostings ids = postings.get(i);
+            long score = postingScores.get(i);
+            for (int j = 0; j < ids.size(); j++) {
+                matches[count++] = (ids.get(j) << SCORE_BITS) | score;
+            }
+        }
+        Arrays.sort(matches);
+
+        // keeps the last, best scored, match of each ID
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i + 1 < count && matches[i + 1] >>> SCORE_BITS == matches[i] >>> SCORE_BITS) {
+                continue;
+            }
+            matches[unique++] = matches[i];
+        }
+        return Arrays.copyOf(matches, unique);
+    }
+
+    /*
+        Words of the field holding every trigram of the given word, and
+        more: the ones holding its rarest trigram, to be checked.
+    */
+    private Set<String> candidates(Field field, String word) {
+        Map<String, Set<String>> fieldTrigrams = trigrams.get(field);
+        Set<String> rarest = null;
+        for (int i = 0; i + MIN_CONTAINS_LENGTH <= word.length(); i++) {
+            Set<String> holding = fieldTrigrams.get(word.substring(i, i + MIN_CONTAINS_LENGTH));
+            if (holding == null) {
+                return Collections.emptySet();
+            }
+            if (rarest == null || holding.size() < rarest.size()) {
+                rarest = holding;
+            }
+        }
+        return rarest;
+    }
+
+    private void addTrigrams(Field field, String word) {
+        Map<String, Set<String>> fieldTrigrams = trigrams.get(field);
+        for (int i = 0; i + MIN_CONTAINS_LENGTH <= word.length(); i++) {
+            fieldTrigrams.computeIfAbsent(word.substring(i, i + MIN_CONTAINS_LENGTH), trigram -> new HashSet<>())
+                    .add(word);
+        }
+    }
+
+    private void removeTrigrams(Field field, String word) {
+        Map<String, Set<String>> fieldTrigrams = trigrams.get(field);
+        for (int i = 0; i + MIN_CONTAINS_LENGTH <= word.length(); i++) {
+            String trigram = word.substring(i, i + MIN_CONTAINS_LENGTH);
+            Set<String> holding = fieldTrigrams.get(trigram);
+            if (holding != null && holding.remove(word) && holding.isEmpty()) {
+                fieldTrigrams.remove(trigram);
+            }
+        }
+    }
+
+    /*
+        Keeps in place the IDs also matched by the next word, adding up
+        their scores. Returns how many were kept.
+    */
+    private static int intersect(long[] ids, int[] scores, long[] matches) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ids.length && j < matches.length) {
+            long match = matches[j] >>> SCORE_BITS;
+            if (ids[i] < match) {
+                i++;
+            } else if (ids[i] > match) {
+                j++;
+            } else {
+                ids[count] = ids[i];
+                scores[count] = scores[i] + (int) (matches[j] & ((1 << SCORE_BITS) - 1));
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static long[] top(long[] ids, int[] scores, int limit) {
+        // best scores first, as the lowest keys, IDs being far below 2^56
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            keys[i] = ((long) (MAX_SCORE - scores[i]) << 56) | ids[i];
+        }
+        Arrays.sort(keys);
+
+        long[] top = new long[Math.min(limit, keys.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = keys[i] & ((1L << 56) - 1);
+        }
+        return top;
+    }
+
+    private void removeDocument(long id) {
+        String[] document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        int field = 0;
+        for (String word : document) {
+            if (word == null) {
+                field++;
+                continue;
+            }
+            NavigableMap<String, LongPostings> fieldWords = words.get(Field.values()[field]);
+            LongPostings postings = fieldWords.get(word);
+            if (postings != null && postings.remove(id) && postings.size() == 0) {
+                fieldWords.remove(word);
+                removeTrigrams(Field.values()[field], word);
+            }
+        }
+    }
+
+    static Set<String> words(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,25 @@
+package com.crud.example.customerapi.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IndexedCustomer {
+
+    /*
+        The customer fields searched, read without loading the entities.
+    */
+
+    private Long id;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String city;
+
+    private String uf;
+}
@@ -0,0 +1,57 @@
+package com.crud.example.customerapi.search;
+
+import java.util.Arrays;
+
+class LongPostings {
+
+    /*
+        Sorted set of customer IDs in a primitive array, grown by half
+        when full. IDs mostly come in increasing order, appended without
+        a search. Not thread safe, guarded by the index lock.
+    */
+
+    private long[] ids = new long[2];
+    private int size;
+
+    boolean add(long id) {
+        if (size == 0 || id > ids[size - 1]) {
+            ensureCapacity();
+            ids[size++] = id;
+            return true;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertion = -index - 1;
+        ensureCapacity();
+        System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+        ids[insertion] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.crud.example.customerapi.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+public class TokenAuthentication extends AbstractAuthenticationToken {
+
+    /*
+        A user authenticated by a bearer token, which carries no
+        credentials besides the token itself.
+    */
+
+    private final String username;
+    private final String tokenId;
+
+    public TokenAuthentication(String username, String tokenId, Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.username = username;
+        this.tokenId = tokenId;
+        setAuthenticated(true);
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return username;
+    }
+}
@@ -0,0 +1,86 @@
+package com.crud.example.customerapi.security;
+
+import com.crud.example.customerapi.cache.CacheInvalidationListener;
+import com.crud.example.customerapi.cache.CacheInvalidationPublisher;
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.model.RevokedToken;
+import com.crud.example.customerapi.repository.RevokedTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+@Component
+@Slf4j
+public class TokenRevocations {
+
+    /*
+        Shares the token revocations between the nodes through the
+        revoked_token table: a revocation is stored, then refused by the
+        node taking it right away and by the others once notified on the
+        connection listening to the cache invalidations, when enabled.
+        The first poll, at startup, reads every revocation not expired
+        yet. Later polls, far apart, catch up on the notifications lost
+        while a node was not listening: they read the ones revoked since
+        the previous poll, going back far enough to cover the clock
+        difference between the nodes and revocations committing late.
+    */
+
+    public static final String CHANNEL = "token_revocation";
+
+    private static final long POLL_OVERLAP_MILLIS = 60000;
+
+    private final RevokedTokenRepository repository;
+    private final TokenService tokenService;
+    private final CacheInvalidationPublisher publisher;
+    private final Duration ttl;
+
+    // start of the last poll that succeeded, null until the first one
+    private Date lastPoll;
+
+    @Autowired
+    public TokenRevocations(RevokedTokenRepository repository, TokenService tokenService,
+                            CacheInvalidationPublisher publisher, Optional<CacheInvalidationListener> listener,
+                            @Value("${customer.security.token-ttl:1h}") Duration ttl) {
+        this.repository = repository;
+        this.tokenService = tokenService;
+        this.publisher = publisher;
+        this.ttl = ttl;
+        listener.ifPresent(present -> present.subscribe(CHANNEL, tokenService::revoke));
+    }
+
+    public void revoke(TokenAuthentication authentication) {
+        Date now = new Date();
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(authentication.getTokenId());
+        revokedToken.setRevokedAt(now);
+        // the token expires within the TTL of its issue
+        revokedToken.setExpiresAt(new Date(now.getTime() + ttl.toMillis()));
+        // persisted, never merged (see RevokedToken), then notified once committed
+        repository.save(revokedToken);
+        tokenService.revoke(authentication);
+        publisher.send(CHANNEL, authentication.getTokenId());
+    }
+
+    @Scheduled(fixedDelayString = "${customer.security.revocation-poll-interval-ms:600000}")
+    public synchronized void poll() {
+        Date now = new Date();
+        Date since = lastPoll == null ? new Date(0) : new Date(lastPoll.getTime() - POLL_OVERLAP_MILLIS);
+        // replicas may not have the latest revocations yet
+        PrimaryRouting.call(() -> repository.findRevokedSince(since, now)).forEach(tokenService::revoke);
+        lastPoll = now;
+    }
+
+    @Scheduled(fixedDelayString = "${customer.security.revocation-purge-interval-ms:3600000}")
+    @Transactional
+    public void purge() {
+        int purged = repository.deleteExpiredBefore(new Date());
+        log.debug(purged + " expired token revocations purged.");
+    }
+}
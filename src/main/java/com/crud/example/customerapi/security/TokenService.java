@@ -0,0 +1,181 @@
+package com.crud.example.customerapi.security;
+
+import com.crud.example.customerapi.dto.AuthToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class TokenService {
+
+    /*
+        Issues and verifies stateless bearer tokens: the token ID, expiry,
+        roles and user name, signed with HMAC-SHA256, so that verifying
+        one takes a hash instead of the password check of HTTP Basic.
+        Verified tokens are cached, skipping even the hash on the next
+        requests, and checked against the expiry and the revocations on
+        every use. Revocations are kept until the tokens would have
+        expired anyway, TokenRevocations sharing them with the other
+        nodes.
+    */
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    // Mac instances are not thread safe
+    private final ThreadLocal<Mac> macs;
+    private final Cache<String, VerifiedToken> verified;
+    private final Cache<String, Boolean> revoked;
+
+    @Autowired
+    public TokenService(@Value("${customer.security.token-secret:}") String secret,
+                        @Value("${customer.security.token-ttl:1h}") Duration ttl,
+                        @Value("${customer.security.token-cache-size:10000}") long cacheSize) {
+        this(secretBytes(secret), ttl, cacheSize);
+    }
+
+    public TokenService(byte[] secret, Duration ttl, long cacheSize) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttl = ttl;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.verified = cacheSize > 0 ? Caffeine.newBuilder().maximumSize(cacheSize).build() : null;
+        this.revoked = Caffeine.newBuilder().expireAfterWrite(ttl).build();
+    }
+
+    public AuthToken issue(Authentication authentication) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttl.getSeconds();
+        String roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        String payload = UUID.randomUUID() + ":" + expiresAt + ":" + roles + ":" + authentication.getName();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        String token = ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+        return new AuthToken(token, "Bearer", ttl.getSeconds());
+    }
+
+    /*
+        The authentication carried by the token, or null when it is not
+        one of ours, has expired or was revoked.
+    */
+    public TokenAuthentication authenticate(String token) {
+        VerifiedToken verifiedToken = verified == null ? null : verified.getIfPresent(token);
+        if (verifiedToken == null) {
+            verifiedToken = verify(token);
+            if (verifiedToken == null) {
+                // only valid tokens are cached, made up ones would evict them
+                return null;
+            }
+            if (verified != null) {
+                verified.put(token, verifiedToken);
+            }
+        }
+
+        if (verifiedToken.expiresAt <= System.currentTimeMillis() / 1000) {
+            if (verified != null) {
+                verified.invalidate(token);
+            }
+            return null;
+        }
+        if (revoked.getIfPresent(verifiedToken.authentication.getTokenId()) != null) {
+            return null;
+        }
+        return verifiedToken.authentication;
+    }
+
+    public void revoke(TokenAuthentication authentication) {
+        revoke(authentication.getTokenId());
+    }
+
+    public void revoke(String tokenId) {
+        revoked.put(tokenId, Boolean.TRUE);
+    }
+
+    private VerifiedToken verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // constant time, not telling how much of a forged signature is right
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return null;
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 4);
+        List<GrantedAuthority> authorities = fields[2].isEmpty()
+                ? AuthorityUtils.NO_AUTHORITIES
+                : AuthorityUtils.commaSeparatedStringToAuthorityList(fields[2]);
+        return new VerifiedToken(new TokenAuthentication(fields[3], fields[0], authorities), Long.parseLong(fields[1]));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+
+    private static byte[] secretBytes(String secret) {
+        if (secret.isEmpty()) {
+            log.warn("No customer.security.token-secret set, the tokens issued are only valid on this node until it restarts."
+                    + " Set it, the same on every node, when running more than one.");
+            byte[] random = new byte[MIN_SECRET_LENGTH];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        if (secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("customer.security.token-secret must have at least " + MIN_SECRET_LENGTH + " characters.");
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class VerifiedToken {
+
+        private final TokenAuthentication authentication;
+        // epoch seconds
+        private final long expiresAt;
+
+        private VerifiedToken(TokenAuthentication authentication, long expiresAt) {
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.crud.example.customerapi.service;
+
+import com.crud.example.customerapi.dto.BatchItemResult;
+import com.crud.example.customerapi.dto.BatchItemResult.Status;
+import com.crud.example.customerapi.dto.BatchResult;
+import com.crud.example.customerapi.model.Address;
+import com.crud.example.customerapi.model.Customer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@Slf4j
+public class CustomerImportService {
+
+    /*
+        Imports customers in chunks, each chunk stored in its own
+        transaction through JDBC batch inserts. Not transactional by
+        itself so that a failing chunk does not roll back the others.
+        An interrupted import, its request having timed out, stops
+        before its next chunk, keeping the chunks already stored.
+    */
+
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${customer.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Autowired
+    public CustomerImportService(CustomerService customerService, ObjectMapper objectMapper, Validator validator) {
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    public BatchResult importCustomers(Iterator<JsonNode> elements) {
+        BatchResult result = new BatchResult();
+        List<Customer> chunk = new ArrayList<>(chunkSize);
+        List<Integer> indexes = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        while (true) {
+            Customer customer;
+            // only reading the body fails the import as malformed, storage failures propagate
+            try {
+                if (!elements.hasNext()) {
+                    break;
+                }
+                customer = toValidCustomer(index, elements.next(), result);
+            } catch (RuntimeException e) {
+                log.debug("Customer batch import stopped at item " + index + ".", e);
+                result.setError("Malformed request body at item " + index + ": " + e.getMessage());
+                break;
+            }
+            if (customer != null) {
+                chunk.add(customer);
+                indexes.add(index);
+            }
+            index++;
+
+            if (chunk.size() == chunkSize) {
+                if (interrupted(indexes.get(0), result)) {
+                    return result;
+                }
+                storeChunk(chunk, indexes, result);
+                chunk.clear();
+                indexes.clear();
+            }
+        }
+
+        if (!chunk.isEmpty() && !interrupted(indexes.get(0), result)) {
+            storeChunk(chunk, indexes, result);
+        }
+        return result;
+    }
+
+    private static boolean interrupted(int index, BatchResult result) {
+        if (!Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        log.debug("Customer batch import interrupted before item " + index + ".");
+        result.setError("Import interrupted before item " + index + ", the items before it were processed.");
+        return true;
+    }
+
+    private Customer toValidCustomer(int index, JsonNode element, BatchResult result) {
+        Customer customer;
+        try {
+            customer = objectMapper.treeToValue(element, Customer.class);
+        } catch (JsonProcessingException e) {
+            result.add(new BatchItemResult(index, Status.INVALID, null, null, e.getOriginalMessage()));
+            return null;
+        }
+
+        String violation = firstViolation(validator.validate(customer));
+        if (violation != null) {
+            result.add(new BatchItemResult(index, Status.INVALID, null, customer.getCpf(), violation));
+            return null;
+        }
+
+        Address address = customer.getAddress();
+        customer.setId(null);
+        customer.setVersion(null);
+        address.setId(null);
+        address.setCustomer(customer);
+        return customer;
+    }
+
+    private String firstViolation(Set<? extends ConstraintViolation<?>> violations) {
+        if (violations.isEmpty()) {
+            return null;
+        }
+        ConstraintViolation<?> violation = violations.iterator().next();
+        return violation.getPropertyPath() + " " + violation.getMessage();
+    }
+
+    private void storeChunk(List<Customer> chunk, List<Integer> indexes, BatchResult result) {
+        Set<String> existingCpfs = customerService.findExistingCpfs(cpfsOf(chunk));
+        Set<String> chunkCpfs = new HashSet<>();
+        List<Customer> toStore = new ArrayList<>(chunk.size());
+        List<Integer> toStoreIndexes = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Customer customer = chunk.get(i);
+            if (existingCpfs.contains(customer.getCpf()) || !chunkCpfs.add(customer.getCpf())) {
+                result.add(conflict(indexes.get(i), customer));
+            } else {
+                toStore.add(customer);
+                toStoreIndexes.add(indexes.get(i));
+            }
+        }
+
+        if (toStore.isEmpty()) {
+            return;
+        }
+
+        try {
+            customerService.saveAll(toStore);
+            for (int i = 0; i < toStore.size(); i++) {
+                result.add(created(toStoreIndexes.get(i), toStore.get(i)));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent writer took one of the CPFs, fall back to one insert per item
+            log.debug("Customer batch chunk rejected, storing its items one by one.", e);
+            for (int i = 0; i < toStore.size(); i++) {
+                storeOne(toStoreIndexes.get(i), toStore.get(i), result);
+            }
+        }
+    }
+
+    private void storeOne(int index, Customer customer, BatchResult result) {
+        customer.setId(null);
+        customer.setVersion(null);
+        customer.getAddress().setId(null);
+        try {
+            customerService.save(customer);
+            result.add(created(index, customer));
+        } catch (DataIntegrityViolationException e) {
+            result.add(conflict(index, customer));
+        }
+    }
+
+    private Set<String> cpfsOf(List<Customer> customers) {
+        Set<String> cpfs = new HashSet<>(customers.size());
+        for (Customer customer : customers) {
+            cpfs.add(customer.getCpf());
+        }
+        return cpfs;
+    }
+
+    private BatchItemResult created(int index, Customer customer) {
+        return new BatchItemResult(index, Status.CREATED, customer.getId(), customer.getCpf(), null);
+    }
+
+    private BatchItemResult conflict(int index, Customer customer) {
+        return new BatchItemResult(index, Status.CONFLICT, null, customer.getCpf(),
+                "Customer with CPF " + customer.getCpf() + " already exists.");
+    }
+}
@@ -1,52 +1,484 @@
 package com.crud.example.customerapi.service;
 
+import com.crud.example.customerapi.cache.CacheInvalidationPublisher;
+import com.crud.example.customerapi.cache.CpfFilter;
+import com.crud.example.customerapi.cache.CustomerCache;
+import com.crud.example.customerapi.changes.CustomerChangeLog;
+import com.crud.example.customerapi.config.MetricsConfig;
+import com.crud.example.customerapi.datasource.PrimaryRouting;
+import com.crud.example.customerapi.dto.CustomerChanges;
+import com.crud.example.customerapi.dto.CustomerLookup;
+import com.crud.example.customerapi.dto.CustomerPage;
+import com.crud.example.customerapi.dto.CustomerStatistics;
+import com.crud.example.customerapi.dto.CustomerSummary;
+import com.crud.example.customerapi.model.Address;
 import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerChange;
 import com.crud.example.customerapi.repository.CustomerRepository;
+import com.crud.example.customerapi.search.CustomerSearch;
+import com.crud.example.customerapi.stats.CustomerStatisticsTracker;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
-@CacheConfig(cacheNames = "customers")
 public class CustomerService {
 
     private final CustomerRepository repository;
 
+    private final CustomerCache customerCache;
+
+    private final CpfFilter cpfFilter;
+
+    private final CacheInvalidationPublisher invalidationPublisher;
+
+    private final CustomerChangeLog changeLog;
+
+    private final CustomerSearch customerSearch;
+
+    private final CustomerStatisticsTracker statisticsTracker;
+
+    private final SingleFlight<Long, Load> idLoads;
+
+    private final SingleFlight<String, Load> documentLoads;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${customer.pagination.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${customer.pagination.max-limit:500}")
+    private int maxLimit;
+
+    @Value("${customer.search.default-limit:20}")
+    private int searchDefaultLimit;
+
+    @Value("${customer.search.max-limit:100}")
+    private int searchMaxLimit;
+
     @Autowired
-    public CustomerService(CustomerRepository repository) {
+    public CustomerService(CustomerRepository repository, CustomerCache customerCache, CpfFilter cpfFilter,
+                           CacheInvalidationPublisher invalidationPublisher, CustomerChangeLog changeLog,
+                           CustomerSearch customerSearch, CustomerStatisticsTracker statisticsTracker,
+                           MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.customerCache = customerCache;
+        this.cpfFilter = cpfFilter;
+        this.invalidationPublisher = invalidationPublisher;
+        this.changeLog = changeLog;
+        this.customerSearch = customerSearch;
+        this.statisticsTracker = statisticsTracker;
+        this.idLoads = new SingleFlight<>("findById", meterRegistry);
+        this.documentLoads = new SingleFlight<>("findByDocument", meterRegistry);
     }
 
-    @Cacheable
+    /*
+        Lookups don't start a transaction of their own, so cache hits
+        never take a connection from the pool, misses are read in the
+        repository's read-only transaction (on a replica, when there
+        are any). Every other read runs in a read-only transaction too.
+        Concurrent misses of the same customer share a single read (see
+        coalesce), cached unless the customer was written meanwhile.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Customer> findById(Long id) {
-        return repository.findById(id);
+        Customer cached = customerCache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        return coalesce(idLoads, id, () -> repository.findById(id));
     }
 
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<Customer> findByDocument(String document) {
-        return repository.findByCpf(document);
+        Customer cached = customerCache.getByCpf(document);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (!cpfFilter.mightContain(document)) {
+            return Optional.empty();
+        }
+
+        return coalesce(documentLoads, document, () -> repository.findByCpf(document));
+    }
+
+    /*
+        Reads sent to the primary, to see the writes of their client, and
+        reads inside a transaction, which may see its own writes, are not
+        shared with the others. A shared read that started before a write
+        of the customer, maybe the caller's own, is read again.
+    */
+    private <K> Optional<Customer> coalesce(SingleFlight<K, Load> loads, K key, Supplier<Optional<Customer>> read) {
+        if (PrimaryRouting.isForced() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return load(read).customer;
+        }
+        Load shared = loads.load(key, () -> load(read));
+        Long id = shared.customer.map(Customer::getId).orElse(null);
+        if (customerCache.writtenSince(shared.startedAt, key, id)) {
+            return load(read).customer;
+        }
+        return shared.customer;
+    }
+
+    private Load load(Supplier<Optional<Customer>> read) {
+        long startedAt = customerCache.loadStarting();
+        Optional<Customer> customer = read.get();
+        customer.ifPresent(loaded -> customerCache.putLoaded(loaded, startedAt));
+        return new Load(startedAt, customer);
+    }
+
+    /*
+        Looks all the IDs up in the cache at once, then reads the misses
+        with their addresses in a single query and caches them. IDs not
+        found are reported instead of failing the lookup.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CustomerLookup findAllById(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        Map<Long, Customer> found = new HashMap<>(customerCache.getAll(requested));
+
+        List<Long> misses = requested.stream()
+                .filter(id -> !found.containsKey(id))
+                .collect(Collectors.toList());
+        if (!misses.isEmpty()) {
+            long startedAt = customerCache.loadStarting();
+            for (Customer customer : repository.findByIdIn(misses)) {
+                found.put(customer.getId(), customer);
+                customerCache.putLoaded(customer, startedAt);
+            }
+        }
+
+        List<Customer> customers = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            Customer customer = found.get(id);
+            if (customer == null) {
+                missingIds.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerLookup(customers, missingIds);
+    }
+
+    /*
+        Customers matching the query in the search index, best matches
+        first, read as findAllById does. The ones deleted since the index
+        last heard of them are left out.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Customer> search(String query, Integer limit) {
+        long[] ids = customerSearch.search(query, limit == null ? searchDefaultLimit : Math.min(limit, searchMaxLimit));
+        return findAllById(LongStream.of(ids).boxed().collect(Collectors.toList())).getCustomers();
+    }
+
+    /*
+        Counts kept in memory, no query runs. Opts out of the class-level
+        transaction, which would otherwise take a connection for nothing.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CustomerStatistics statistics() {
+        return statisticsTracker.statistics();
+    }
+
+    /*
+        Same as findById, without the address: a cached customer is
+        summarized, misses are read without the address join and, being
+        incomplete, are not cached.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<CustomerSummary> findSummaryById(Long id) {
+        Customer cached = customerCache.get(id);
+        if (cached != null) {
+            return Optional.of(CustomerSummary.of(cached));
+        }
+        return repository.findSummaryById(id);
+    }
+
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<CustomerSummary> findSummaryByDocument(String document) {
+        Customer cached = customerCache.getByCpf(document);
+        if (cached != null) {
+            return Optional.of(CustomerSummary.of(cached));
+        }
+        if (!cpfFilter.mightContain(document)) {
+            return Optional.empty();
+        }
+        return repository.findSummaryByCpf(document);
     }
 
-    public List<Customer> findAll() {
-        return (List<Customer>) repository.findAll();
+    /*
+        Keyset pagination: reads the customers with ID greater than
+        the given cursor, so deep pages cost the same as the first one.
+        One extra row is fetched to tell whether a next page exists.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public CustomerPage<Customer> findPage(Long after, Integer limit) {
+        return findPage(after, limit, repository::findByIdGreaterThanOrderByIdAsc, Customer::getId);
     }
 
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public CustomerPage<CustomerSummary> findSummaryPage(Long after, Integer limit) {
+        return findPage(after, limit, repository::findSummaryByIdGreaterThanOrderByIdAsc, CustomerSummary::getId);
+    }
+
+    private <T> CustomerPage<T> findPage(Long after, Integer limit, BiFunction<Long, Pageable, List<T>> query,
+                                         Function<T, Long> idOf) {
+        int pageSize = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        long cursor = after == null ? 0L : after;
+
+        List<T> customers = query.apply(cursor, PageRequest.of(0, pageSize + 1));
+        if (customers.size() <= pageSize) {
+            return new CustomerPage<>(customers, null);
+        }
+
+        List<T> page = customers.subList(0, pageSize);
+        return new CustomerPage<>(page, idOf.apply(page.get(pageSize - 1)));
+    }
+
+    /*
+        Hands every customer to the consumer as soon as it is read,
+        detaching it afterwards so the persistence context stays empty
+        and memory does not grow with the table size.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public void export(Consumer<Customer> consumer) {
+        try (Stream<Customer> customers = repository.streamAll()) {
+            for (Customer customer : (Iterable<Customer>) customers::iterator) {
+                consumer.accept(customer);
+                entityManager.detach(customer);
+            }
+        }
+    }
+
+    /*
+        Flushed before the change is logged, so that a duplicate CPF
+        fails without taking a change ID: IDs of rolled back changes
+        hold the change feed up until the gap timeout.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
     public Customer save(Customer customer) {
-        return repository.save(customer);
+        Customer saved = repository.saveAndFlush(customer);
+        cpfFilter.add(saved.getCpf());
+        customerCache.put(saved);
+        invalidationPublisher.publish(saved.getId(), saved.getCpf());
+        changeLog.record(CustomerChange.Type.CREATED, saved.getId());
+        return saved;
+    }
+
+    /*
+        Stores the customers with their addresses through JDBC batch
+        inserts, flushing so that constraint violations surface here,
+        then clearing the persistence context to keep chunks independent.
+        Imported customers are not cached so they don't push out hot ones.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    public List<Customer> saveAll(List<Customer> customers) {
+        List<Customer> saved = repository.saveAll(customers);
+        saved.forEach(customer -> cpfFilter.add(customer.getCpf()));
+        repository.flush();
+        invalidationPublisher.publish(saved);
+        changeLog.recordAll(CustomerChange.Type.CREATED, saved.stream().map(Customer::getId).collect(Collectors.toList()));
+        entityManager.clear();
+        return saved;
+    }
+
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public Set<String> findExistingCpfs(Collection<String> cpfs) {
+        return repository.findCpfByCpfIn(cpfs);
+    }
+
+    /*
+        Creates the customer, or replaces the one stored with the same
+        CPF, in a single statement. Returns whether it was created.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    public boolean upsertByCpf(Customer customer) {
+        boolean created = repository.upsertByCpf(customer);
+        cpfFilter.add(customer.getCpf());
+        customerCache.put(customer);
+        invalidationPublisher.publish(customer.getId(), customer.getCpf());
+        changeLog.record(created ? CustomerChange.Type.CREATED : CustomerChange.Type.UPDATED, customer.getId());
+        return created;
     }
 
-    @CachePut(key = "#result.id")
-    public Customer update(Customer customer) {
-        return repository.save(customer);
+    /*
+        Replaces the customer and its address with bulk updates, without
+        loading them first: no updated row means the customer does not
+        exist, or that it changed since the expected version (when given).
+        Returns the customer as stored, empty when it does not exist. The
+        new version is the one written by the update and the address ID
+        comes from the cached copy; when either is unknown the customer is
+        read back, in the same transaction. The given customer stays with
+        the request, a copy of it is cached and returned, as reads return
+        the cached customers.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    public Optional<Customer> update(Long id, Long expectedVersion, Customer customer) {
+        Customer cached = customerCache.get(id);
+        CustomerChanges changes = CustomerChanges.of(customer);
+        if (expectedVersion == null || cached == null) {
+            if (!applyChanges(id, expectedVersion, changes)) {
+                return Optional.empty();
+            }
+            Optional<Customer> stored = repository.findById(id);
+            stored.ifPresent(customerCache::put);
+            return stored;
+        }
+
+        Long version = updateCustomer(id, expectedVersion, changes);
+        if (version == null) {
+            return Optional.empty();
+        }
+        updated(id, changes);
+
+        Customer stored = stored(customer, id, version, cached.getAddress().getId());
+        customerCache.put(stored);
+        return Optional.of(stored);
     }
 
-    public void deleteById(Long id) {
-        repository.deleteById(id);
+    /*
+        Updates only the given fields, same as update otherwise.
+        Returns whether the customer exists.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    public boolean patch(Long id, Long expectedVersion, CustomerChanges changes) {
+        return applyChanges(id, expectedVersion, changes);
+    }
+
+    private boolean applyChanges(Long id, Long expectedVersion, CustomerChanges changes) {
+        if (expectedVersion == null) {
+            if (repository.updateCustomer(id, changes.getCustomer()) == 0) {
+                return false;
+            }
+        } else if (updateCustomer(id, expectedVersion, changes) == null) {
+            return false;
+        }
+        updated(id, changes);
+        return true;
+    }
+
+    /*
+        Returns the version written, null when the customer does not
+        exist, and throws when it changed since the expected version.
+    */
+    private Long updateCustomer(Long id, long expectedVersion, CustomerChanges changes) {
+        // the customer update also bumps the version when only the address changes
+        Long version = repository.updateCustomer(id, expectedVersion, changes.getCustomer());
+        if (version == null && repository.existsById(id)) {
+            throw new OptimisticLockingFailureException("Customer with ID " + id + " changed since version " + expectedVersion + ".");
+        }
+        return version;
+    }
+
+    private void updated(Long id, CustomerChanges changes) {
+        if (!changes.getAddress().isEmpty()) {
+            repository.updateAddress(id, changes.getAddress());
+        }
+
+        String cpf = changes.getCpf();
+        if (cpf != null) {
+            cpfFilter.add(cpf);
+        }
+        customerCache.evict(id, cpf);
+        invalidationPublisher.publish(id, cpf);
+        changeLog.record(CustomerChange.Type.UPDATED, id);
+    }
+
+    /*
+        Deletes the address and the customer by ID, without loading them
+        first. Returns whether the customer existed.
+    */
+    @Timed(MetricsConfig.CUSTOMER_SERVICE_TIMER)
+    public boolean deleteById(Long id) {
+        repository.deleteAddressByCustomerId(id);
+        if (repository.deleteCustomerById(id) == 0) {
+            return false;
+        }
+        customerCache.evict(id);
+        invalidationPublisher.publish(id, null);
+        changeLog.record(CustomerChange.Type.DELETED, id);
+        return true;
+    }
+
+    /*
+        A customer as stored from the fields of the given one, a new
+        instance along with its address.
+    */
+    private static Customer stored(Customer customer, Long id, Long version, Long addressId) {
+        Address address = new Address();
+        Address given = customer.getAddress();
+        address.setId(addressId);
+        address.setStreet(given.getStreet());
+        address.setNumber(given.getNumber());
+        address.setZipCode(given.getZipCode());
+        address.setComplement(given.getComplement());
+        address.setNeighbourhood(given.getNeighbourhood());
+        address.setCity(given.getCity());
+        address.setUf(given.getUf());
+
+        Customer stored = new Customer();
+        stored.setId(id);
+        stored.setVersion(version);
+        stored.setFirstName(customer.getFirstName());
+        stored.setLastName(customer.getLastName());
+        stored.setEmail(customer.getEmail());
+        stored.setCpf(customer.getCpf());
+        stored.setDateOfBirth(customer.getDateOfBirth());
+        stored.setAddress(address);
+        address.setCustomer(stored);
+        return stored;
+    }
+
+    private static class Load {
+
+        private final long startedAt;
+        private final Optional<Customer> customer;
+
+        private Load(long startedAt, Optional<Customer> customer) {
+            this.startedAt = startedAt;
+            this.customer = customer;
+        }
     }
 }
@@ -0,0 +1,70 @@
+package com.crud.example.customerapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+class SingleFlight<K, V> {
+
+    /*
+        Coalesces concurrent loads of the same key: the first caller
+        loads, the ones arriving while it runs wait for its result, or its
+        exception, instead of loading again. Loads in flight are kept in a
+        ConcurrentHashMap, whose updates only lock the bin of their key,
+        so unrelated keys never wait on each other. Loads and coalesced
+        calls are counted in customer.service.loads.
+    */
+
+    static final String LOADS_COUNTER = "customer.service.loads";
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter loaded;
+    private final Counter coalesced;
+
+    SingleFlight(String lookup, MeterRegistry registry) {
+        this.loaded = registry.counter(LOADS_COUNTER, "lookup", lookup, "outcome", "loaded");
+        this.coalesced = registry.counter(LOADS_COUNTER, "lookup", lookup, "outcome", "coalesced");
+    }
+
+    V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+
+        loaded.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            // callers arriving from now on load again, seeing the writes made meanwhile
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
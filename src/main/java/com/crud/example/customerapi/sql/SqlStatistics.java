@@ -0,0 +1,66 @@
+package com.crud.example.customerapi.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SqlStatistics {
+
+    /*
+        JDBC statements run by the current HTTP request and the time
+        spent in them, bound to the request thread while the request is
+        handled, and to the executor threads running it asynchronously
+        (see SqlStatisticsTaskDecorator). Statements run on other threads,
+        such as scheduled jobs, are not counted. Only the first
+        MAX_QUERIES statements are kept for logging.
+    */
+
+    public static final String REQUEST_ATTRIBUTE = SqlStatistics.class.getName();
+
+    private static final int MAX_QUERIES = 50;
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long elapsedMillis;
+    private final List<String> queries = new ArrayList<>();
+
+    public static SqlStatistics start() {
+        SqlStatistics statistics = new SqlStatistics();
+        bind(statistics);
+        return statistics;
+    }
+
+    public static void bind(SqlStatistics statistics) {
+        CURRENT.set(statistics);
+    }
+
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    synchronized void record(List<String> sql, long elapsedMillis) {
+        statements++;
+        this.elapsedMillis += elapsedMillis;
+        for (String query : sql) {
+            if (queries.size() < MAX_QUERIES) {
+                queries.add(query);
+            }
+        }
+    }
+
+    public synchronized int getStatements() {
+        return statements;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public synchronized List<String> getQueries() {
+        return new ArrayList<>(queries);
+    }
+}
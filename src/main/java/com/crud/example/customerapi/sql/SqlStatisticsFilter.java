@@ -0,0 +1,103 @@
+package com.crud.example.customerapi.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+@Slf4j
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    /*
+        Collects the SQL statistics of each request and logs, with the
+        statements that ran, the requests over the statement or duration
+        budget. When enabled the statistics are also sent as response
+        headers, set right before the response is committed so that
+        streamed responses get them too (as counted up to that point).
+        Asynchronous requests are checked on the dispatch completing them.
+    */
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+
+    private static final String START_ATTRIBUTE = SqlStatisticsFilter.class.getName() + ".start";
+
+    private final boolean headersEnabled;
+    private final int maxStatements;
+    private final Duration maxDuration;
+
+    public SqlStatisticsFilter(boolean headersEnabled, int maxStatements, Duration maxDuration) {
+        this.headersEnabled = headersEnabled;
+        this.maxStatements = maxStatements;
+        this.maxDuration = maxDuration;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the response of asynchronous requests is written on their async dispatch
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = (SqlStatistics) request.getAttribute(SqlStatistics.REQUEST_ATTRIBUTE);
+        if (isAsyncDispatch(request) && statistics != null) {
+            SqlStatistics.bind(statistics);
+        } else {
+            statistics = SqlStatistics.start();
+            request.setAttribute(SqlStatistics.REQUEST_ATTRIBUTE, statistics);
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+
+        HttpServletResponse wrappedResponse = headersEnabled ? new HeaderWritingResponse(response, statistics) : response;
+        try {
+            chain.doFilter(request, wrappedResponse);
+        } finally {
+            SqlStatistics.stop();
+            if (!isAsyncStarted(request)) {
+                if (headersEnabled && !response.isCommitted()) {
+                    writeHeaders(response, statistics);
+                }
+                long start = (Long) request.getAttribute(START_ATTRIBUTE);
+                checkBudget(request, statistics, Duration.ofNanos(System.nanoTime() - start));
+            }
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, SqlStatistics statistics, Duration duration) {
+        if (statistics.getStatements() <= maxStatements && duration.compareTo(maxDuration) <= 0) {
+            return;
+        }
+        log.warn(request.getMethod() + " " + request.getRequestURI() + " took " + duration.toMillis() + " ms and "
+                + statistics.getStatements() + " SQL statements (" + statistics.getElapsedMillis() + " ms), over the budget of "
+                + maxStatements + " statements and " + maxDuration.toMillis() + " ms:\n"
+                + String.join("\n", statistics.getQueries()));
+    }
+
+    private static void writeHeaders(HttpServletResponse response, SqlStatistics statistics) {
+        response.setHeader(STATEMENTS_HEADER, String.valueOf(statistics.getStatements()));
+        response.setHeader(TIME_HEADER, String.valueOf(statistics.getElapsedMillis()));
+    }
+
+    private static class HeaderWritingResponse extends OnCommittedResponseWrapper {
+
+        private final SqlStatistics statistics;
+
+        HeaderWritingResponse(HttpServletResponse response, SqlStatistics statistics) {
+            super(response);
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders((HttpServletResponse) getResponse(), statistics);
+        }
+    }
+}
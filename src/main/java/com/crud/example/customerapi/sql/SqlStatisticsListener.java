@@ -0,0 +1,48 @@
+package com.crud.example.customerapi.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class SqlStatisticsListener implements QueryExecutionListener {
+
+    /*
+        Adds every statement executed through the data source to the
+        statistics of the current request, and logs the ones slower than
+        the threshold wherever they run. A JDBC batch counts as one
+        statement, as it takes a single round trip.
+    */
+
+    private final Duration slowQueryThreshold;
+
+    public SqlStatisticsListener(Duration slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // measured by datasource-proxy, nothing to do before
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        List<String> queries = queryInfoList.stream()
+                .map(QueryInfo::getQuery)
+                .collect(Collectors.toList());
+
+        SqlStatistics statistics = SqlStatistics.current();
+        if (statistics != null) {
+            statistics.record(queries, execInfo.getElapsedTime());
+        }
+
+        if (execInfo.getElapsedTime() >= slowQueryThreshold.toMillis()) {
+            log.warn("Slow SQL statement took " + execInfo.getElapsedTime() + " ms: " + String.join("; ", queries));
+        }
+    }
+}
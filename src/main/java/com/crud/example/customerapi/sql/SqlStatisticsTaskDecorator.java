@@ -0,0 +1,28 @@
+package com.crud.example.customerapi.sql;
+
+import org.springframework.core.task.TaskDecorator;
+
+public class SqlStatisticsTaskDecorator implements TaskDecorator {
+
+    /*
+        Carries the SQL statistics of the submitting request over to the
+        executor thread, so that the statements of asynchronous handlers
+        and streamed responses are counted for the request as well.
+    */
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        SqlStatistics statistics = SqlStatistics.current();
+        if (statistics == null) {
+            return runnable;
+        }
+        return () -> {
+            SqlStatistics.bind(statistics);
+            try {
+                runnable.run();
+            } finally {
+                SqlStatistics.stop();
+            }
+        };
+    }
+}
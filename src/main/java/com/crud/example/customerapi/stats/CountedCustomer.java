@@ -0,0 +1,24 @@
+package com.crud.example.customerapi.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+public class CountedCustomer {
+
+    /*
+        The customer fields counted by the statistics, read without
+        loading the entities.
+    */
+
+    private Long id;
+
+    private String uf;
+
+    private String city;
+
+    private Date dateOfBirth;
+}
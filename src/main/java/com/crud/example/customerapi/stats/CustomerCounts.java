@@ -0,0 +1,166 @@
+package com.crud.example.customerapi.stats;
+
+import com.crud.example.customerapi.dto.CustomerStatistics;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class CustomerCounts {
+
+    /*
+        In-memory customer counts by state and city, and by date of
+        birth, the age brackets depending on the day they are asked for.
+        Each customer keeps a reference to the counts it is in, so that a
+        change or removal decrements them without reading what it was
+        before. The statistics are computed from the counts, never from
+        the customers, and kept until the next change or the next day.
+    */
+
+    private static final int[] BRACKET_AGES = {18, 25, 35, 45, 55, 65};
+    private static final String[] BRACKETS = {"0-17", "18-24", "25-34", "35-44", "45-54", "55-64", "65+"};
+
+    private final Map<Long, Counted> customers = new HashMap<>();
+    private final Map<String, Map<String, CityCount>> cities = new HashMap<>();
+    // by days since the epoch
+    private final NavigableMap<Long, DayCount> birthDays = new TreeMap<>();
+
+    private CustomerStatistics statistics;
+    private LocalDate statisticsDay;
+
+    /*
+        Counts the customer, replacing what was counted for its ID.
+    */
+    public synchronized void put(long id, String uf, String city, LocalDate dateOfBirth) {
+        uncount(id);
+        CityCount cityCount = null;
+        if (uf != null && city != null) {
+            cityCount = cities.computeIfAbsent(uf, key -> new HashMap<>())
+                    .computeIfAbsent(city, key -> new CityCount(uf, city));
+            cityCount.value++;
+        }
+        DayCount dayCount = null;
+        if (dateOfBirth != null) {
+            dayCount = birthDays.computeIfAbsent(dateOfBirth.toEpochDay(), DayCount::new);
+            dayCount.value++;
+        }
+        customers.put(id, new Counted(cityCount, dayCount));
+        statistics = null;
+    }
+
+    public synchronized void remove(long id) {
+        uncount(id);
+        statistics = null;
+    }
+
+    public synchronized CustomerStatistics statistics(LocalDate today) {
+        if (statistics != null && today.equals(statisticsDay)) {
+            return statistics;
+        }
+
+        Map<String, Integer> byUf = new TreeMap<>();
+        Map<String, Map<String, Integer>> byCity = new TreeMap<>();
+        cities.forEach((uf, ufCities) -> {
+            Map<String, Integer> counts = new TreeMap<>();
+            ufCities.forEach((city, count) -> counts.put(city, count.value));
+            byUf.put(uf, counts.values().stream().mapToInt(Integer::intValue).sum());
+            byCity.put(uf, Collections.unmodifiableMap(counts));
+        });
+
+        // oldest first, moving to the younger brackets as their cutoffs are passed
+        long[] cutoffs = new long[BRACKET_AGES.length];
+        for (int i = 0; i < cutoffs.length; i++) {
+            cutoffs[i] = today.minusYears(BRACKET_AGES[i]).toEpochDay();
+        }
+        int[] bracketCounts = new int[BRACKETS.length];
+        int bracket = BRACKETS.length - 1;
+        for (DayCount day : birthDays.values()) {
+            while (bracket > 0 && day.day > cutoffs[bracket - 1]) {
+                bracket--;
+            }
+            bracketCounts[bracket] += day.value;
+        }
+        Map<String, Integer> byAgeBracket = new LinkedHashMap<>();
+        for (int i = 0; i < BRACKETS.length; i++) {
+            byAgeBracket.put(BRACKETS[i], bracketCounts[i]);
+        }
+
+        statistics = new CustomerStatistics(customers.size(), Collections.unmodifiableMap(byUf),
+                Collections.unmodifiableMap(byCity), Collections.unmodifiableMap(byAgeBracket));
+        statisticsDay = today;
+        return statistics;
+    }
+
+    /*
+        Counts the customer as the other counts do, or removes it when
+        they do not count it.
+    */
+    public void putAs(CustomerCounts other, long id) {
+        Counted counted;
+        synchronized (other) {
+            counted = other.customers.get(id);
+        }
+        if (counted == null) {
+            remove(id);
+        } else {
+            put(id, counted.city == null ? null : counted.city.uf, counted.city == null ? null : counted.city.city,
+                    counted.day == null ? null : LocalDate.ofEpochDay(counted.day.day));
+        }
+    }
+
+    private void uncount(long id) {
+        Counted counted = customers.remove(id);
+        if (counted == null) {
+            return;
+        }
+        CityCount city = counted.city;
+        if (city != null && --city.value == 0) {
+            Map<String, CityCount> ufCities = cities.get(city.uf);
+            ufCities.remove(city.city);
+            if (ufCities.isEmpty()) {
+                cities.remove(city.uf);
+            }
+        }
+        DayCount day = counted.day;
+        if (day != null && --day.value == 0) {
+            birthDays.remove(day.day);
+        }
+    }
+
+    private static class Counted {
+
+        private final CityCount city;
+        private final DayCount day;
+
+        private Counted(CityCount city, DayCount day) {
+            this.city = city;
+            this.day = day;
+        }
+    }
+
+    private static class CityCount {
+
+        private final String uf;
+        private final String city;
+        private int value;
+
+        private CityCount(String uf, String city) {
+            this.uf = uf;
+            this.city = city;
+        }
+    }
+
+    private static class DayCount {
+
+        private final long day;
+        private int value;
+
+        private DayCount(long day) {
+            this.day = day;
+        }
+    }
+}
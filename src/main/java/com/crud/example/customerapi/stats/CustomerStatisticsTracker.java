@@ -0,0 +1,166 @@
+package com.crud.example.customerapi.stats;
+
+import com.crud.example.customerapi.changes.CustomerChangeFeed;
+import com.crud.example.customerapi.changes.CustomerChangeFollower;
+import com.crud.example.customerapi.dto.CustomerStatistics;
+import com.crud.example.customerapi.exception.NotReadyException;
+import com.crud.example.customerapi.repository.CustomerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+@Component
+@Slf4j
+public class CustomerStatisticsTracker extends CustomerChangeFollower<CustomerCounts, CountedCustomer> {
+
+    /*
+        Keeps the customer counts of this node, built at startup and then
+        following the change log (see CustomerChangeFollower), so that
+        every write, on any node, is counted after a poll of the change
+        feed. Recounted from the database periodically: any difference
+        found for the customers that did not change during the recount
+        is logged with the totals that differ and counted in
+        customer.stats.drift.
+    */
+
+    public static final String DRIFT_COUNTER = "customer.stats.drift";
+
+    private final CustomerRepository repository;
+    private final Counter drift;
+
+    @Value("${customer.stats.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CustomerStatisticsTracker(CustomerRepository repository, PlatformTransactionManager transactionManager,
+                                     CustomerChangeFeed changeFeed, MeterRegistry meterRegistry) {
+        super("customer-stats", transactionManager, changeFeed);
+        this.repository = repository;
+        this.drift = meterRegistry.counter(DRIFT_COUNTER);
+    }
+
+    public CustomerStatistics statistics() {
+        CustomerCounts current = state();
+        if (current == null) {
+            throw new NotReadyException("The customer statistics are not counted yet, try again later.");
+        }
+        return current.statistics(LocalDate.now(ZoneOffset.UTC));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Customer statistics could not be counted, they are unavailable until the next reconciliation.", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${customer.stats.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${customer.stats.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        rebuild();
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected CustomerCounts newState() {
+        return new CustomerCounts();
+    }
+
+    @Override
+    protected Stream<CountedCustomer> streamAll() {
+        return repository.streamCounted();
+    }
+
+    @Override
+    protected List<CountedCustomer> findByIdIn(List<Long> ids) {
+        return repository.findCountedByIdIn(ids);
+    }
+
+    @Override
+    protected Long idOf(CountedCustomer customer) {
+        return customer.getId();
+    }
+
+    @Override
+    protected void put(CustomerCounts counts, CountedCustomer customer) {
+        Date dateOfBirth = customer.getDateOfBirth();
+        // dates of birth are stored as midnight UTC, as Jackson parses them
+        counts.put(customer.getId(), customer.getUf(), customer.getCity(), dateOfBirth == null ? null
+                : Instant.ofEpochMilli(dateOfBirth.getTime()).atZone(ZoneOffset.UTC).toLocalDate());
+    }
+
+    @Override
+    protected void remove(CustomerCounts counts, Long id) {
+        counts.remove(id);
+    }
+
+    @Override
+    protected void replaced(CustomerCounts previous, CustomerCounts recounted, Set<Long> changedWhileBuilding) {
+        if (previous == null) {
+            return;
+        }
+        // the recount may or may not have read the changes made meanwhile, only the other customers are compared
+        for (Long id : changedWhileBuilding) {
+            previous.putAs(recounted, id);
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        CustomerStatistics kept = previous.statistics(today);
+        CustomerStatistics counted = recounted.statistics(today);
+        if (!kept.equals(counted)) {
+            drift.increment();
+            log.warn("Customer statistics recounted from the database differ from the counts kept: "
+                    + differences(kept, counted) + ".");
+        }
+    }
+
+    /*
+        The totals that differ, as kept -> recounted, the cities left out
+        for brevity (their state total differs too).
+    */
+    static String differences(CustomerStatistics kept, CustomerStatistics recounted) {
+        List<String> differences = new ArrayList<>();
+        if (kept.getTotal() != recounted.getTotal()) {
+            differences.add("total " + kept.getTotal() + " -> " + recounted.getTotal());
+        }
+        addDifferences(differences, "uf ", kept.getByUf(), recounted.getByUf());
+        addDifferences(differences, "age ", kept.getByAgeBracket(), recounted.getByAgeBracket());
+        return differences.isEmpty() ? "cities only" : String.join(", ", differences);
+    }
+
+    private static void addDifferences(List<String> differences, String prefix,
+                                       Map<String, Integer> kept, Map<String, Integer> recounted) {
+        Set<String> keys = new TreeSet<>(kept.keySet());
+        keys.addAll(recounted.keySet());
+        for (String key : keys) {
+            int keptCount = kept.getOrDefault(key, 0);
+            int recountedCount = recounted.getOrDefault(key, 0);
+            if (keptCount != recountedCount) {
+                differences.add(prefix + key + " " + keptCount + " -> " + recountedCount);
+            }
+        }
+    }
+}
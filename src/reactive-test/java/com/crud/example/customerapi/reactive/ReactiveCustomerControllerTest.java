@@ -0,0 +1,157 @@
+package com.crud.example.customerapi.reactive;
+
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ReactiveCustomerApiApplication.class,
+        properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+public class ReactiveCustomerControllerTest {
+
+    /*
+        The reactive endpoints against a mocked repository, checking they
+        answer like CustomerController does.
+    */
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveCustomerRepository repository;
+
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        customer = setUpCustomer();
+    }
+
+    @Test
+    public void retrieveACustomerByIDWithItsVersionAsETag() {
+        Mockito.when(repository.findById(1L)).thenReturn(Mono.just(customer));
+
+        webTestClient.get().uri("/customers/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody().jsonPath("$.cpf").isEqualTo("93350016006");
+    }
+
+    @Test
+    public void retrieveAnUnknownCustomerByID() {
+        Mockito.when(repository.findById(1L)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/customers/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void retrieveAPageWithTheNextCursor() {
+        Customer next = setUpCustomer();
+        next.setId(2L);
+        Mockito.when(repository.findByIdGreaterThan(0L, 2)).thenReturn(Flux.just(customer, next));
+
+        webTestClient.get().uri("/customers?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Next-Cursor", "1")
+                .expectBody().jsonPath("$.length()").isEqualTo(1);
+    }
+
+    @Test
+    public void createACustomer() {
+        Mockito.when(repository.insert(ArgumentMatchers.any(Customer.class))).thenReturn(Mono.just(customer));
+
+        webTestClient.post().uri("/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(json(customer.getCpf()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueMatches(HttpHeaders.LOCATION, ".*/customers/1");
+    }
+
+    @Test
+    public void createACustomerWithAnInvalidCPF() {
+        webTestClient.post().uri("/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(json("99999999999"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void createACustomerWithAnExistingCPF() {
+        Mockito.when(repository.insert(ArgumentMatchers.any(Customer.class)))
+                .thenReturn(Mono.error(new DataIntegrityViolationException("duplicate key value")));
+
+        webTestClient.post().uri("/customers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(json(customer.getCpf()))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void updateAnOutdatedVersionOfACustomer() {
+        Mockito.when(repository.update(ArgumentMatchers.eq(1L), ArgumentMatchers.eq(2L), ArgumentMatchers.any(Customer.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("changed")));
+
+        webTestClient.put().uri("/customers/1")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(json(customer.getCpf()))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    public void deleteACustomerWithoutAuthentication() {
+        webTestClient.delete().uri("/customers/1")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void deleteACustomer() {
+        Mockito.when(repository.deleteById(1L)).thenReturn(Mono.just(true));
+
+        webTestClient.delete().uri("/customers/1")
+                .headers(headers -> headers.setBasicAuth("admin", "password"))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    private String json(String cpf) {
+        return "{\"firstName\": \"Joao Ricardo\", \"lastName\": \"Da Silva\", \"email\": \"jrdasilva@gmail.com\","
+                + " \"cpf\": \"" + cpf + "\", \"dateOfBirth\": \"22-02-1989\", \"address\": {\"street\": \"Rua Jeronimo Pattaro\","
+                + " \"number\": 71, \"zipCode\": \"13400111\", \"complement\": \"AP 31\", \"neighbourhood\": \"Vila Santa Isabel\","
+                + " \"city\": \"Campinas\", \"uf\": \"SP\"}}";
+    }
+
+    private Customer setUpCustomer() {
+        Customer customer = CustomerFixtures.customer(1L, "93350016006");
+        customer.setVersion(3L);
+        return customer;
+    }
+}
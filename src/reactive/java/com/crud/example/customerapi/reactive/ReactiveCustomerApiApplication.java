@@ -0,0 +1,38 @@
+package com.crud.example.customerapi.reactive;
+
+import com.crud.example.customerapi.exception.ResponseEntityExceptionHandler;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+@SpringBootApplication(exclude = {
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class})
+@ConditionalOnWebApplication(type = REACTIVE)
+@Import(ResponseEntityExceptionHandler.class)
+public class ReactiveCustomerApiApplication {
+
+    /*
+        Serves the /customers endpoints with WebFlux and R2DBC instead of
+        Spring MVC and JPA, sharing the model, its validation and the
+        error handling of the servlet application. Only built by the
+        reactive Maven profile. Every class of this package is limited to
+        reactive applications, so that the servlet application scanning
+        it leaves them out.
+    */
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveCustomerApiApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(args);
+    }
+}
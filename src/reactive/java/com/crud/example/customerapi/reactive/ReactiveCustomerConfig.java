@@ -0,0 +1,82 @@
+package com.crud.example.customerapi.reactive;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+import java.time.Duration;
+
+import static io.r2dbc.spi.ConnectionFactoryOptions.PASSWORD;
+import static io.r2dbc.spi.ConnectionFactoryOptions.USER;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+@Configuration
+@ConditionalOnWebApplication(type = REACTIVE)
+public class ReactiveCustomerConfig {
+
+    /*
+        Reactor Netty server, pool of R2DBC connections to PostgreSQL,
+        and the same basic authentication of delete methods as
+        SecurityConfig.
+    */
+
+    /*
+        Tomcat, brought by the servlet application, would otherwise be
+        preferred to serve WebFlux, through a thread per connection.
+    */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(
+            @Value("${customer.r2dbc.url}") String url,
+            @Value("${customer.r2dbc.username}") String username,
+            @Value("${customer.r2dbc.password}") String password,
+            @Value("${customer.r2dbc.pool.initial-size:2}") int initialSize,
+            @Value("${customer.r2dbc.pool.max-size:10}") int maxSize,
+            @Value("${customer.r2dbc.pool.max-acquire-time:20s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(USER, username)
+                .option(PASSWORD, password)
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf().disable()
+                .authorizeExchange()
+                    .pathMatchers(HttpMethod.DELETE, "/customers/**").hasRole("ADMIN")
+                    .anyExchange().permitAll()
+                .and()
+                .httpBasic()
+                .and()
+                .build();
+    }
+
+    @Bean
+    public MapReactiveUserDetailsService userDetailsService() {
+        return new MapReactiveUserDetailsService(User.withUsername("admin")
+                .password("{noop}password")
+                .roles("ADMIN")
+                .build());
+    }
+}
@@ -0,0 +1,131 @@
+package com.crud.example.customerapi.reactive;
+
+import com.crud.example.customerapi.controller.ETags;
+import com.crud.example.customerapi.exception.CustomerNotFoundException;
+import com.crud.example.customerapi.model.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+@RestController
+@RequestMapping("/customers")
+@Validated
+@ConditionalOnWebApplication(type = REACTIVE)
+public class ReactiveCustomerController {
+
+    /*
+        The contract of CustomerController for listing, CPF lookup, get
+        by ID, create, update and delete, served without blocking: no
+        customers cache, every request reads from the database.
+    */
+
+    private static final String ID_NOT_FOUND = "Customer with ID %d not found.";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final ReactiveCustomerRepository repository;
+
+    @Value("${customer.pagination.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${customer.pagination.max-limit:500}")
+    private int maxLimit;
+
+    @Autowired
+    public ReactiveCustomerController(ReactiveCustomerRepository repository) {
+        this.repository = repository;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<Customer>>> findCustomers(
+            @RequestParam(value = "cpf", required = false) String cpf,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) @Min(1) Integer limit,
+            UriComponentsBuilder builder) {
+        if (cpf != null) {
+            return repository.findByCpf(cpf)
+                    .map(customer -> ResponseEntity.ok(Collections.singletonList(customer)))
+                    .switchIfEmpty(Mono.error(() -> new CustomerNotFoundException("Customer with CPF " + cpf + " not found.")));
+        }
+
+        int pageSize = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        return repository.findByIdGreaterThan(after == null ? 0L : after, pageSize + 1)
+                .collectList()
+                .map(customers -> {
+                    if (customers.size() <= pageSize) {
+                        return ResponseEntity.ok(customers);
+                    }
+
+                    List<Customer> page = customers.subList(0, pageSize);
+                    Long nextCursor = page.get(pageSize - 1).getId();
+                    URI next = builder.path("/customers")
+                            .queryParam("after", nextCursor)
+                            .queryParam("limit", pageSize)
+                            .build().toUri();
+                    return ResponseEntity.ok()
+                            .header(NEXT_CURSOR_HEADER, nextCursor.toString())
+                            .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                            .body(page);
+                });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Customer>> findById(@PathVariable Long id) {
+        return repository.findById(id)
+                .map(customer -> ResponseEntity.ok().eTag(ETags.of(customer.getVersion())).body(customer))
+                .switchIfEmpty(Mono.error(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id))));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Customer>> create(@Valid @RequestBody Customer customer, UriComponentsBuilder builder) {
+        customer.getAddress().setCustomer(customer);
+        return repository.insert(customer)
+                .map(created -> ResponseEntity
+                        .created(builder.path("/customers/{id}").buildAndExpand(created.getId()).toUri())
+                        .body(created));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Customer>> update(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody Customer customer) {
+        customer.getAddress().setCustomer(customer);
+        return repository.update(id, ETags.expectedVersion(ifMatch), customer)
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated))
+                .switchIfEmpty(Mono.error(() -> new CustomerNotFoundException(String.format(ID_NOT_FOUND, id))));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable Long id) {
+        return repository.deleteById(id)
+                .map(deleted -> {
+                    if (!deleted) {
+                        throw new CustomerNotFoundException(String.format(ID_NOT_FOUND, id));
+                    }
+                    return ResponseEntity.ok().<Void>build();
+                });
+    }
+}
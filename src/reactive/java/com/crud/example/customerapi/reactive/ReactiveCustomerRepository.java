@@ -0,0 +1,294 @@
+package com.crud.example.customerapi.reactive;
+
+import com.crud.example.customerapi.cache.CacheInvalidation;
+import com.crud.example.customerapi.cache.CacheInvalidationPublisher;
+import com.crud.example.customerapi.model.Address;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerChange;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+@Repository
+@ConditionalOnWebApplication(type = REACTIVE)
+public class ReactiveCustomerRepository {
+
+    /*
+        Customers and their addresses read and written with R2DBC, on the
+        tables and sequences mapped by JPA for the servlet application
+        (which creates them). New rows take their IDs straight from the
+        sequences, as the upsert by CPF does. Writes are recorded in the
+        customer change log and notify the servlet nodes through
+        CacheInvalidationPublisher.CHANNEL, in the same transaction, so
+        that the change feed sees them and the nodes evict the changed
+        customers: with the notifications off, the servlet nodes keep
+        serving what they cached until it expires.
+        Results are always read to completion: cancelling them, as next()
+        does, would roll transactions back and may leave the connection
+        unusable for the pool.
+    */
+
+    private static final String SELECT_CUSTOMER =
+            "select c.id, c.first_name, c.last_name, c.email, c.cpf, c.date_of_birth, c.version,"
+            + " a.id as address_id, a.street, a.number, a.zip_code, a.complement, a.neighbourhood, a.city, a.uf"
+            + " from customer c left join address a on a.customer_id = c.id";
+
+    private static final String INSERT_CUSTOMER =
+            "with inserted_customer as ("
+            + " insert into customer (id, first_name, last_name, email, cpf, date_of_birth, version)"
+            + " values (nextval('customer_seq'), $1, $2, $3, $4, $5, 0)"
+            + " returning id, version"
+            + "), inserted_address as ("
+            + " insert into address (id, street, number, zip_code, complement, neighbourhood, city, uf, customer_id)"
+            + " select nextval('address_seq'), $6, $7, $8, $9, $10, $11, $12, id from inserted_customer"
+            + " returning id"
+            + ")"
+            + " select c.id, c.version, a.id as address_id from inserted_customer c cross join inserted_address a";
+
+    private static final String INSERT_CHANGE =
+            "insert into customer_change (customer_id, type, changed_at) values ($1, $2, current_timestamp)";
+
+    private static final String UPDATE_CUSTOMER =
+            "update customer set first_name = $1, last_name = $2, email = $3, cpf = $4, date_of_birth = $5,"
+            + " version = version + 1 where id = $6";
+
+    private static final String UPDATE_ADDRESS =
+            "update address set street = $1, number = $2, zip_code = $3, complement = $4, neighbourhood = $5,"
+            + " city = $6, uf = $7 where customer_id = $8 returning id";
+
+    private final ConnectionFactory connectionFactory;
+
+    private final String node = UUID.randomUUID().toString();
+
+    @Value("${customer.cache.invalidation.enabled:true}")
+    private boolean invalidationEnabled;
+
+    @Autowired
+    public ReactiveCustomerRepository(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public Mono<Customer> findById(Long id) {
+        return withConnection(connection -> select(connection, SELECT_CUSTOMER + " where c.id = $1", id)).singleOrEmpty();
+    }
+
+    public Mono<Customer> findByCpf(String cpf) {
+        return withConnection(connection -> select(connection, SELECT_CUSTOMER + " where c.cpf = $1", cpf)).singleOrEmpty();
+    }
+
+    public Flux<Customer> findByIdGreaterThan(long id, int limit) {
+        return withConnection(connection ->
+                select(connection, SELECT_CUSTOMER + " where c.id > $1 order by c.id limit $2", id, limit));
+    }
+
+    /*
+        Stores the customer and its address in a single statement,
+        setting their IDs and version.
+    */
+    public Mono<Customer> insert(Customer customer) {
+        Address address = customer.getAddress();
+        return inTransaction(connection -> {
+            Statement statement = connection.createStatement(INSERT_CUSTOMER);
+            bindCustomer(statement, customer, 0);
+            bindAddress(statement, address, 5);
+            return Flux.from(statement.execute())
+                    .flatMap(result -> result.map((row, metadata) -> {
+                        customer.setId(row.get("id", Long.class));
+                        customer.setVersion(row.get("version", Long.class));
+                        address.setId(row.get("address_id", Long.class));
+                        return customer;
+                    }))
+                    .concatMap(inserted -> recordChange(connection, CustomerChange.Type.CREATED, inserted.getId())
+                            .then(notifyInvalidation(connection, inserted))
+                            .thenReturn(inserted));
+        }).singleOrEmpty().onErrorMap(R2dbcDataIntegrityViolationException.class, ReactiveCustomerRepository::translate);
+    }
+
+    /*
+        Replaces the customer and its address, checking the version when
+        an expected one is given. Empty when the customer does not exist,
+        and failing with an OptimisticLockingFailureException when it
+        changed since the expected version.
+    */
+    public Mono<Customer> update(Long id, Long expectedVersion, Customer customer) {
+        Address address = customer.getAddress();
+        return inTransaction(connection -> {
+            Statement statement = connection.createStatement(UPDATE_CUSTOMER
+                    + (expectedVersion == null ? "" : " and version = $7") + " returning version");
+            bindCustomer(statement, customer, 0);
+            statement.bind(5, id);
+            if (expectedVersion != null) {
+                statement.bind(6, expectedVersion);
+            }
+            return Flux.from(statement.execute())
+                    .flatMap(result -> result.map((row, metadata) -> row.get("version", Long.class)))
+                    .flatMap(version -> {
+                        Statement addressStatement = connection.createStatement(UPDATE_ADDRESS);
+                        bindAddress(addressStatement, address, 0);
+                        addressStatement.bind(7, id);
+                        return Flux.from(addressStatement.execute())
+                                .flatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)))
+                                .map(addressId -> {
+                                    customer.setId(id);
+                                    customer.setVersion(version);
+                                    address.setId(addressId);
+                                    return customer;
+                                });
+                    })
+                    .concatMap(updated -> recordChange(connection, CustomerChange.Type.UPDATED, id)
+                            .then(notifyInvalidation(connection, updated))
+                            .thenReturn(updated));
+        }).singleOrEmpty()
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null ? Mono.<Customer>empty() : existsById(id)
+                        .flatMap(exists -> exists
+                                ? Mono.<Customer>error(new OptimisticLockingFailureException(
+                                        "Customer with ID " + id + " changed since version " + expectedVersion + "."))
+                                : Mono.<Customer>empty())))
+                .onErrorMap(R2dbcDataIntegrityViolationException.class, ReactiveCustomerRepository::translate);
+    }
+
+    /*
+        Deletes the customer and its address, telling whether it existed.
+    */
+    public Mono<Boolean> deleteById(Long id) {
+        return inTransaction(connection ->
+                Flux.from(connection.createStatement("delete from address where customer_id = $1").bind(0, id).execute())
+                        .flatMap(result -> result.getRowsUpdated())
+                        .thenMany(Flux.from(connection.createStatement("delete from customer where id = $1 returning cpf")
+                                .bind(0, id).execute()))
+                        .flatMap(result -> result.map((row, metadata) -> row.get("cpf", String.class)))
+                        .concatMap(cpf -> recordChange(connection, CustomerChange.Type.DELETED, id)
+                                .then(notifyInvalidation(connection, id, cpf))
+                                .thenReturn(true)))
+                .singleOrEmpty()
+                .defaultIfEmpty(false);
+    }
+
+    public Mono<Boolean> existsById(Long id) {
+        return withConnection(connection -> Flux.from(connection.createStatement("select 1 from customer where id = $1")
+                .bind(0, id).execute())
+                .flatMap(result -> result.map((row, metadata) -> true)))
+                .singleOrEmpty()
+                .defaultIfEmpty(false);
+    }
+
+    private static Mono<Void> recordChange(Connection connection, CustomerChange.Type type, Long id) {
+        return Flux.from(connection.createStatement(INSERT_CHANGE)
+                .bind(0, id)
+                .bind(1, type.name())
+                .execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .then();
+    }
+
+    private Mono<Void> notifyInvalidation(Connection connection, Customer customer) {
+        return notifyInvalidation(connection, customer.getId(), customer.getCpf());
+    }
+
+    private Mono<Void> notifyInvalidation(Connection connection, Long id, String cpf) {
+        if (!invalidationEnabled) {
+            return Mono.empty();
+        }
+        return Flux.from(connection.createStatement("select pg_notify($1, $2)")
+                .bind(0, CacheInvalidationPublisher.CHANNEL)
+                .bind(1, new CacheInvalidation(node, id, cpf).toPayload())
+                .execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .then();
+    }
+
+    private <T> Flux<T> withConnection(Function<Connection, Publisher<T>> action) {
+        return Flux.usingWhen(connectionFactory.create(), action, Connection::close);
+    }
+
+    private <T> Flux<T> inTransaction(Function<Connection, Publisher<T>> action) {
+        return withConnection(connection -> Flux.usingWhen(
+                Mono.from(connection.beginTransaction()).thenReturn(connection),
+                action,
+                Connection::commitTransaction,
+                (transaction, error) -> transaction.rollbackTransaction(),
+                Connection::rollbackTransaction));
+    }
+
+    private static Flux<Customer> select(Connection connection, String sql, Object... parameters) {
+        Statement statement = connection.createStatement(sql);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.bind(i, parameters[i]);
+        }
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, metadata) -> toCustomer(row)));
+    }
+
+    private static void bindCustomer(Statement statement, Customer customer, int index) {
+        statement.bind(index, customer.getFirstName())
+                .bind(index + 1, customer.getLastName())
+                .bind(index + 2, customer.getEmail())
+                .bind(index + 3, customer.getCpf())
+                .bind(index + 4, LocalDateTime.ofInstant(customer.getDateOfBirth().toInstant(), ZoneId.systemDefault()));
+    }
+
+    private static void bindAddress(Statement statement, Address address, int index) {
+        statement.bind(index, address.getStreet())
+                .bind(index + 1, address.getNumber())
+                .bind(index + 2, address.getZipCode());
+        if (address.getComplement() == null) {
+            statement.bindNull(index + 3, String.class);
+        } else {
+            statement.bind(index + 3, address.getComplement());
+        }
+        statement.bind(index + 4, address.getNeighbourhood())
+                .bind(index + 5, address.getCity())
+                .bind(index + 6, address.getUf());
+    }
+
+    private static Customer toCustomer(Row row) {
+        Customer customer = new Customer();
+        customer.setId(row.get("id", Long.class));
+        customer.setFirstName(row.get("first_name", String.class));
+        customer.setLastName(row.get("last_name", String.class));
+        customer.setEmail(row.get("email", String.class));
+        customer.setCpf(row.get("cpf", String.class));
+        LocalDateTime dateOfBirth = row.get("date_of_birth", LocalDateTime.class);
+        customer.setDateOfBirth(dateOfBirth == null ? null : Date.from(dateOfBirth.atZone(ZoneId.systemDefault()).toInstant()));
+        customer.setVersion(row.get("version", Long.class));
+
+        Long addressId = row.get("address_id", Long.class);
+        if (addressId != null) {
+            Address address = new Address();
+            address.setId(addressId);
+            address.setStreet(row.get("street", String.class));
+            address.setNumber(row.get("number", Integer.class));
+            address.setZipCode(row.get("zip_code", String.class));
+            address.setComplement(row.get("complement", String.class));
+            address.setNeighbourhood(row.get("neighbourhood", String.class));
+            address.setCity(row.get("city", String.class));
+            address.setUf(row.get("uf", String.class));
+            address.setCustomer(customer);
+            customer.setAddress(address);
+        }
+        return customer;
+    }
+
+    private static DataIntegrityViolationException translate(R2dbcDataIntegrityViolationException exception) {
+        return new DataIntegrityViolationException(exception.getMessage(), exception);
+    }
+}
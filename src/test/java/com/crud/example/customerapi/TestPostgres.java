@@ -0,0 +1,57 @@
+package com.crud.example.customerapi;
+
+import org.junit.Assume;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+public final class TestPostgres {
+
+    /*
+        PostgreSQL for the tests relying on what H2 does not have, such
+        as NOTIFY or ON CONFLICT: the database at the
+        customer.test.postgres.url system property (with .username and
+        .password) when given, otherwise a container started once for
+        all of them, removed by Testcontainers when the JVM exits. The
+        tests are skipped when neither is available, without Docker.
+    */
+
+    private static final String URL_PROPERTY = "customer.test.postgres.url";
+
+    private static PostgreSQLContainer<?> container;
+
+    private TestPostgres() {
+    }
+
+    public static synchronized void require() {
+        if (System.getProperty(URL_PROPERTY) != null || container != null) {
+            return;
+        }
+        Assume.assumeTrue("Neither Docker nor " + URL_PROPERTY + " is available.",
+                DockerClientFactory.instance().isDockerAvailable());
+        container = new PostgreSQLContainer<>("postgres:12");
+        container.start();
+    }
+
+    /*
+        The datasource properties of an application context on the
+        database, once required.
+    */
+    public static String[] datasourceProperties() {
+        return new String[]{
+                "spring.datasource.url=" + url(),
+                "spring.datasource.username=" + username(),
+                "spring.datasource.password=" + password()};
+    }
+
+    public static synchronized String url() {
+        return container == null ? System.getProperty(URL_PROPERTY) : container.getJdbcUrl();
+    }
+
+    public static synchronized String username() {
+        return container == null ? System.getProperty(URL_PROPERTY + ".username", "postgres") : container.getUsername();
+    }
+
+    public static synchronized String password() {
+        return container == null ? System.getProperty(URL_PROPERTY + ".password", "") : container.getPassword();
+    }
+}
@@ -0,0 +1,134 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.TestPostgres;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.crud.example.customerapi.security.TokenRevocations;
+import com.crud.example.customerapi.security.TokenService;
+import com.crud.example.customerapi.service.CustomerService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.function.Supplier;
+
+public class CacheInvalidationTest {
+
+    /*
+        Starts two application contexts against PostgreSQL (see
+        TestPostgres) and checks that a write on one evicts the customer
+        cached by the other, and that a token revoked on one is refused
+        by the other long before its poll.
+    */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private Long customerId;
+
+    @BeforeClass
+    public static void requirePostgres() {
+        TestPostgres.require();
+    }
+
+    @Before
+    public void setUp() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @After
+    public void tearDown() {
+        if (customerId != null) {
+            nodeA.getBean(CustomerService.class).deleteById(customerId);
+        }
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    public void updateOnOneNodeEvictsTheCustomerCachedByTheOther() throws InterruptedException {
+        CustomerService serviceA = nodeA.getBean(CustomerService.class);
+        CustomerService serviceB = nodeB.getBean(CustomerService.class);
+
+        Customer customer = serviceA.save(CustomerFixtures.customer(CustomerFixtures.randomCpf()));
+        customerId = customer.getId();
+        Assert.assertEquals("Joao Ricardo", serviceB.findById(customerId).map(Customer::getFirstName).orElse(null));
+
+        customer.setFirstName("Maria");
+        serviceA.update(customerId, null, customer);
+
+        Assert.assertTrue(eventually(() -> serviceB.findById(customerId)
+                .map(Customer::getFirstName)
+                .filter("Maria"::equals)
+                .isPresent()));
+    }
+
+    @Test
+    public void deleteOnOneNodeEvictsTheCustomerCachedByTheOther() throws InterruptedException {
+        CustomerService serviceA = nodeA.getBean(CustomerService.class);
+        CustomerService serviceB = nodeB.getBean(CustomerService.class);
+
+        Customer customer = serviceA.save(CustomerFixtures.customer(CustomerFixtures.randomCpf()));
+        Long id = customer.getId();
+        Assert.assertTrue(serviceB.findById(id).isPresent());
+
+        serviceA.deleteById(id);
+
+        Assert.assertTrue(eventually(() -> !serviceB.findById(id).isPresent()));
+    }
+
+    @Test
+    public void insertOnOneNodeIsFoundByCpfOnTheOther() throws InterruptedException {
+        CustomerService serviceA = nodeA.getBean(CustomerService.class);
+        CustomerService serviceB = nodeB.getBean(CustomerService.class);
+
+        Customer customer = serviceA.save(CustomerFixtures.customer(CustomerFixtures.randomCpf()));
+        customerId = customer.getId();
+
+        Assert.assertTrue(eventually(() -> serviceB.findByDocument(customer.getCpf()).isPresent()));
+    }
+
+    @Test
+    public void tokenRevokedOnOneNodeIsRefusedByTheOther() throws InterruptedException {
+        TokenService tokensA = nodeA.getBean(TokenService.class);
+        TokenService tokensB = nodeB.getBean(TokenService.class);
+        String token = tokensA.issue(new UsernamePasswordAuthenticationToken("admin", null,
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN"))).getToken();
+        Assert.assertNotNull(tokensB.authenticate(token));
+
+        nodeA.getBean(TokenRevocations.class).revoke(tokensA.authenticate(token));
+
+        Assert.assertTrue(eventually(() -> tokensB.authenticate(token) == null));
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(CustomerApiApplication.class)
+                .properties(TestPostgres.datasourceProperties())
+                .properties(
+                        "server.port=0",
+                        "customer.cache.invalidation.enabled=true",
+                        "customer.cache.invalidation.poll-timeout-ms=100")
+                // over the empty secret of application.properties, unlike the default properties above
+                .run("--customer.security.token-secret=test-secret-of-at-least-32-characters");
+    }
+
+    private boolean eventually(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.get()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.crud.example.customerapi.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsTheIdsWrittenInTheirOrder() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+        List<Long> ids = Arrays.asList(42L, 7L, Long.MAX_VALUE, 1L);
+
+        CacheSnapshot.write(file, ids);
+        CacheSnapshot.write(file, ids);
+
+        Assert.assertEquals(ids, CacheSnapshot.read(file));
+        Assert.assertEquals(12 + 4 * 8, Files.size(file));
+        Assert.assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void readsAMissingOrForeignFileAsNoIds() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+        Assert.assertEquals(Collections.emptyList(), CacheSnapshot.read(file));
+
+        Files.write(file, "not a snapshot".getBytes());
+        Assert.assertEquals(Collections.emptyList(), CacheSnapshot.read(file));
+
+        CacheSnapshot.write(file, Arrays.asList(1L, 2L));
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), 12 + 8);
+        Files.write(file, truncated);
+        Assert.assertEquals(Collections.emptyList(), CacheSnapshot.read(file));
+    }
+}
@@ -0,0 +1,51 @@
+package com.crud.example.customerapi.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CpfBloomFilterTest {
+
+    private static final int INSERTIONS = 100000;
+
+    @Test
+    public void neverMissesAnAddedCpf() {
+        CpfBloomFilter filter = new CpfBloomFilter(INSERTIONS, 0.01);
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.add(cpf(i));
+        }
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            Assert.assertTrue(filter.mightContain(cpf(i)));
+        }
+    }
+
+    @Test
+    public void keepsFalsePositivesNearTheConfiguredProbability() {
+        CpfBloomFilter filter = new CpfBloomFilter(INSERTIONS, 0.01);
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.add(cpf(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = INSERTIONS; i < 2 * INSERTIONS; i++) {
+            if (filter.mightContain(cpf(i))) {
+                falsePositives++;
+            }
+        }
+
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < INSERTIONS * 0.02);
+    }
+
+    @Test
+    public void emptyFilterContainsNothing() {
+        CpfBloomFilter filter = new CpfBloomFilter(0, 0.01);
+
+        Assert.assertFalse(filter.mightContain("93350016006"));
+        Assert.assertTrue(filter.getHashCount() >= 1);
+    }
+
+    private String cpf(int i) {
+        return String.format("%011d", 93350016006L + i * 7919L);
+    }
+}
@@ -0,0 +1,97 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.repository.CustomerRepository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CpfFilterTest {
+
+    private List<String> stored;
+    private CustomerRepository repository;
+    private CpfFilter filter;
+
+    @Before
+    public void setUp() {
+        // added to by the writer thread while rebuilds copy it
+        stored = Collections.synchronizedList(new ArrayList<>());
+        repository = Mockito.mock(CustomerRepository.class);
+        Mockito.when(repository.count()).thenAnswer(invocation -> (long) stored.size());
+        Mockito.when(repository.streamAllCpfs()).thenAnswer(invocation -> new ArrayList<>(stored).stream());
+
+        filter = new CpfFilter(repository, Mockito.mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "falsePositiveProbability", 0.001);
+        filter.rebuild();
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void keepsTheCpfsAddedWhileRebuilding() {
+        Mockito.when(repository.streamAllCpfs()).thenAnswer(invocation -> {
+            // committed after the rebuild read the table
+            filter.add("52998224725");
+            return new ArrayList<>(stored).stream();
+        });
+
+        filter.rebuild();
+
+        Assert.assertTrue(filter.mightContain("52998224725"));
+    }
+
+    @Test
+    public void addsTheCpfsOfATransactionWhenItCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        filter.add("52998224725");
+
+        // rebuilt after the write, reading the table before the commit
+        filter.rebuild();
+        Assert.assertFalse(filter.mightContain("52998224725"));
+
+        stored.add("52998224725");
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        Assert.assertTrue(filter.mightContain("52998224725"));
+    }
+
+    @Test
+    public void neverLosesACpfAddedAroundARebuild() throws InterruptedException {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> added = new ArrayList<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                String cpf = String.format("%011d", 10000000000L + i * 7919L);
+                stored.add(cpf);
+                filter.add(cpf);
+                added.add(cpf);
+            }
+            writing.set(false);
+        });
+
+        writer.start();
+        while (writing.get()) {
+            filter.rebuild();
+        }
+        writer.join();
+
+        for (String cpf : added) {
+            Assert.assertTrue(cpf, filter.mightContain(cpf));
+        }
+    }
+}
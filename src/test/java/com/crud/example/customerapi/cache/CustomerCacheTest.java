@@ -0,0 +1,165 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.config.CacheConfig;
+import com.crud.example.customerapi.dto.CacheStatistics;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {CacheConfig.class, CustomerCache.class})
+public class CustomerCacheTest {
+
+    @Autowired
+    private CustomerCache customerCache;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Before
+    public void setUp() {
+        customerCache.clear();
+    }
+
+    @Test
+    public void cachesACustomerByIdAndCpf() {
+        Customer customer = CustomerFixtures.customer(1L, "93350016006");
+
+        customerCache.put(customer);
+
+        Assert.assertSame(customer, customerCache.get(1L));
+        Assert.assertSame(customer, customerCache.getByCpf("93350016006"));
+    }
+
+    @Test
+    public void changingTheCpfDropsTheOldIndexEntry() {
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+        Customer updated = CustomerFixtures.customer(1L, "52998224725");
+
+        customerCache.put(updated);
+
+        Assert.assertNull(customerCache.getByCpf("93350016006"));
+        Assert.assertSame(updated, customerCache.getByCpf("52998224725"));
+    }
+
+    @Test
+    public void evictingACustomerDropsItsCpf() {
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+
+        customerCache.evict(1L);
+
+        Assert.assertNull(customerCache.get(1L));
+        Assert.assertNull(customerCache.getByCpf("93350016006"));
+    }
+
+    @Test
+    public void anIndexEntryPointingToAnotherCustomerIsIgnored() {
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+        // the customer expires from the cache while its CPF index entry stays
+        CustomerCache.nativeCache(cacheManager.getCache(CacheConfig.CUSTOMERS)).invalidate(1L);
+        customerCache.put(CustomerFixtures.customer(1L, "52998224725"));
+
+        Assert.assertNull(customerCache.getByCpf("93350016006"));
+        Assert.assertNotNull(customerCache.getByCpf("52998224725"));
+    }
+
+    @Test
+    public void bulkLookupReturnsTheCachedCustomersOnly() {
+        Customer customer = CustomerFixtures.customer(1L, "93350016006");
+        customerCache.put(customer);
+        long hits = hitCount();
+
+        Map<Long, Customer> cached = customerCache.getAll(Arrays.asList(1L, 2L));
+
+        Assert.assertEquals(Collections.singletonMap(1L, customer), cached);
+        Assert.assertEquals(hits + 1, hitCount());
+    }
+
+    @Test
+    public void statisticsCountHitsAndMisses() {
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+        long hits = hitCount();
+
+        customerCache.get(1L);
+        customerCache.get(2L);
+
+        Assert.assertEquals(hits + 1, hitCount());
+    }
+
+    @Test
+    public void listsTheHottestCachedIds() {
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+        customerCache.put(CustomerFixtures.customer(2L, "52998224725"));
+        customerCache.put(CustomerFixtures.customer(3L, "24159206654"));
+
+        Assert.assertEquals(2, customerCache.hottestIds(2).size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), new HashSet<>(customerCache.hottestIds(10)));
+    }
+
+    @Test
+    public void aReadStartedBeforeAWriteIsNotCached() {
+        long loadStarted = customerCache.loadStarting();
+        customerCache.put(CustomerFixtures.customer(1L, "93350016006"));
+        customerCache.evict(1L);
+
+        customerCache.putLoaded(CustomerFixtures.customer(1L, "93350016006"), loadStarted);
+
+        Assert.assertNull(customerCache.get(1L));
+        Assert.assertTrue(customerCache.writtenSince(loadStarted, 1L));
+        Assert.assertFalse(customerCache.writtenSince(customerCache.loadStarting(), 1L));
+    }
+
+    @Test
+    public void aReadNeverReplacesANewerVersion() {
+        Customer newer = CustomerFixtures.customer(1L, "93350016006");
+        newer.setVersion(2L);
+        customerCache.put(newer);
+        Customer older = CustomerFixtures.customer(1L, "93350016006");
+        older.setVersion(1L);
+
+        customerCache.putLoaded(older, customerCache.loadStarting());
+
+        Assert.assertSame(newer, customerCache.get(1L));
+    }
+
+    @Test
+    public void withReplicasOnlyWritesKeepReadsOutOfTheCache() {
+        CustomerCache withReplicas = new CustomerCache(cacheManager, "jdbc:postgresql://replica:5432/postgres",
+                Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(withReplicas, "enabled", true);
+        withReplicas.putLoaded(CustomerFixtures.customer(1L, "93350016006"), withReplicas.loadStarting());
+        // the customer expires from the cache, unchanged
+        CustomerCache.nativeCache(cacheManager.getCache(CacheConfig.CUSTOMERS)).invalidate(1L);
+
+        withReplicas.putLoaded(CustomerFixtures.customer(1L, "93350016006"), withReplicas.loadStarting());
+        Assert.assertNotNull(withReplicas.get(1L));
+
+        withReplicas.evict(1L);
+        withReplicas.putLoaded(CustomerFixtures.customer(1L, "93350016006"), withReplicas.loadStarting());
+        Assert.assertNull(withReplicas.get(1L));
+    }
+
+    private long hitCount() {
+        List<CacheStatistics> statistics = customerCache.statistics();
+        return statistics.stream()
+                .filter(cache -> CacheConfig.CUSTOMERS.equals(cache.getName()))
+                .findFirst()
+                .map(CacheStatistics::getHitCount)
+                .orElseThrow(IllegalStateException::new);
+    }
+}
@@ -0,0 +1,56 @@
+package com.crud.example.customerapi.cache;
+
+import com.crud.example.customerapi.service.CustomerService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CustomerCacheWarmUpTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void isUpOnceTheTimeoutIsOverEvenIfAReadIsStuck() throws IOException, InterruptedException {
+        Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+        CacheSnapshot.write(file, Arrays.asList(1L, 2L, 3L));
+        CustomerService customerService = Mockito.mock(CustomerService.class);
+        CountDownLatch reading = new CountDownLatch(1);
+        Mockito.when(customerService.findAllById(ArgumentMatchers.anyCollection())).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return null;
+        });
+        CustomerCacheWarmUp warmUp = new CustomerCacheWarmUp(customerService, Mockito.mock(CustomerCache.class));
+        ReflectionTestUtils.setField(warmUp, "snapshotFile", file.toString());
+        ReflectionTestUtils.setField(warmUp, "warmUpTimeout", Duration.ofMillis(200));
+
+        warmUp.warmUp();
+        Assert.assertTrue(reading.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+
+        Thread.sleep(300);
+        Assert.assertEquals(Status.UP, warmUp.health().getStatus());
+        Assert.assertEquals(true, warmUp.health().getDetails().get("timedOut"));
+    }
+}
@@ -0,0 +1,185 @@
+package com.crud.example.customerapi.changes;
+
+import com.crud.example.customerapi.model.CustomerChange;
+import com.crud.example.customerapi.repository.CustomerChangeRepository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class CustomerChangeFeedDeliveryTest {
+
+    /*
+        Polls the change feed by hand, with the change log in a list,
+        to follow what each subscriber and listener gets.
+    */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final List<CustomerChange> changeLog = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private CustomerChangeFeed changeFeed;
+
+    @Before
+    public void setUp() {
+        CustomerChangeRepository repository = Mockito.mock(CustomerChangeRepository.class);
+        Mockito.when(repository.findLastIdBefore(ArgumentMatchers.any(Date.class))).thenReturn(0L);
+        Mockito.when(repository.findByIdGreaterThanOrderByIdAsc(ArgumentMatchers.anyLong(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> {
+                    long after = invocation.getArgument(0);
+                    return changeLog.stream().filter(change -> change.getId() > after)
+                            .sorted(Comparator.comparing(CustomerChange::getId)).collect(Collectors.toList());
+                });
+        Mockito.when(repository.findByIdInOrderByIdAsc(ArgumentMatchers.anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return changeLog.stream().filter(change -> ids.contains(change.getId()))
+                    .sorted(Comparator.comparing(CustomerChange::getId)).collect(Collectors.toList());
+        });
+        changeFeed = new CustomerChangeFeed(repository, 2);
+        ReflectionTestUtils.setField(changeFeed, "batchSize", 500);
+        ReflectionTestUtils.setField(changeFeed, "gapTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(changeFeed, "retention", Duration.ofDays(7));
+        ReflectionTestUtils.setField(changeFeed, "subscriberBacklog", 2);
+        ReflectionTestUtils.setField(changeFeed, "maxSubscribers", 2);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        changeFeed.stop();
+    }
+
+    @Test
+    public void aStalledSubscriberHoldsUpNeitherTheOthersNorTheListeners() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(() -> {
+            sending.countDown();
+            release.await();
+        });
+        RecordingEmitter subscriber = new RecordingEmitter(() -> {
+        });
+        List<CustomerChange> heard = new CopyOnWriteArrayList<>();
+        changeFeed.subscribe(stalled, null);
+        changeFeed.subscribe(subscriber, null);
+        changeFeed.addListener(heard::addAll);
+
+        changeLog.add(change(1));
+        changeLog.add(change(2));
+        changeFeed.poll();
+
+        Assert.assertTrue(sending.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, heard.size());
+        awaitSent(subscriber, 1L, 2L);
+        // lets the sender thread of the subscriber count the changes as sent
+        Thread.sleep(100);
+
+        changeLog.add(change(3));
+        changeFeed.poll();
+
+        awaitSent(subscriber, 1L, 2L, 3L);
+        Assert.assertEquals(3, heard.size());
+        // the stalled subscriber has three changes waiting, over the backlog of two
+        Assert.assertEquals(1, changeFeed.getSubscriberCount());
+    }
+
+    @Test
+    public void changesCommittingAfterTheGapTimeoutAreStillDelivered() throws Exception {
+        ReflectionTestUtils.setField(changeFeed, "gapTimeout", Duration.ZERO);
+        RecordingEmitter subscriber = new RecordingEmitter(() -> {
+        });
+        List<CustomerChange> heard = new CopyOnWriteArrayList<>();
+        changeFeed.subscribe(subscriber, null);
+        changeFeed.addListener(heard::addAll);
+
+        changeLog.add(change(1));
+        changeLog.add(change(3));
+        changeFeed.poll();
+        awaitSent(subscriber, 1L, 3L);
+
+        changeLog.add(change(2));
+        changeFeed.poll();
+        changeFeed.poll();
+
+        awaitSent(subscriber, 1L, 3L, 2L);
+        Assert.assertEquals(Arrays.asList(1L, 3L, 2L),
+                heard.stream().map(CustomerChange::getId).collect(Collectors.toList()));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void subscribersOverTheLimitAreRefused() {
+        changeFeed.subscribe(new RecordingEmitter(() -> {
+        }), null);
+        changeFeed.subscribe(new RecordingEmitter(() -> {
+        }), null);
+
+        changeFeed.subscribe(new RecordingEmitter(() -> {
+        }), null);
+    }
+
+    private static CustomerChange change(long id) {
+        CustomerChange change = new CustomerChange();
+        change.setId(id);
+        change.setCustomerId(id);
+        change.setType(CustomerChange.Type.UPDATED);
+        change.setChangedAt(new Date());
+        return change;
+    }
+
+    private static void awaitSent(RecordingEmitter emitter, Long... ids) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        List<Long> expected = Arrays.asList(ids);
+        while (!emitter.sent.equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, emitter.sent);
+    }
+
+    private interface Send {
+
+        void run() throws InterruptedException;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final Send send;
+        private final List<Long> sent = new CopyOnWriteArrayList<>();
+
+        RecordingEmitter(Send send) {
+            this.send = send;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                send.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            for (DataWithMediaType data : builder.build()) {
+                if (MediaType.APPLICATION_JSON.equals(data.getMediaType())) {
+                    sent.add(((CustomerChange) data.getData()).getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.crud.example.customerapi.changes;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.crud.example.customerapi.repository.CustomerChangeRepository;
+import com.crud.example.customerapi.service.CustomerService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.net.HttpURLConnection.HTTP_GONE;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CustomerApiApplication.class, properties = "customer.changes.poll-interval-ms=50")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class CustomerChangeFeedTest {
+
+    /*
+        Follows the change feed of an in-memory database, with the
+        changes made through the service, as a client would.
+    */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerChangeRepository changeRepository;
+
+    @Autowired
+    private CustomerChangeFeed changeFeed;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+    private long cursor;
+
+    @Before
+    public void setUp() {
+        Long last = changeRepository.findLastIdBefore(new Date(Long.MAX_VALUE));
+        cursor = last == null ? 0L : last;
+    }
+
+    @Test
+    public void changesAreStreamedInOrderSinceTheCursor() throws Exception {
+        Customer customer = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        customer.setFirstName("Maria");
+        customerService.update(customer.getId(), null, customer);
+        customerService.deleteById(customer.getId());
+
+        MockHttpServletResponse response = subscribe(MockMvcRequestBuilders.get("/customers/changes")
+                .param("since", String.valueOf(cursor)));
+        List<JsonNode> changes = awaitChanges(response, 3);
+
+        Assert.assertTrue(MediaType.TEXT_EVENT_STREAM.isCompatibleWith(MediaType.parseMediaType(response.getContentType())));
+        Assert.assertEquals("CREATED", changes.get(0).get("type").asText());
+        Assert.assertEquals("UPDATED", changes.get(1).get("type").asText());
+        Assert.assertEquals("DELETED", changes.get(2).get("type").asText());
+        for (JsonNode change : changes) {
+            Assert.assertEquals(customer.getId().longValue(), change.get("customerId").asLong());
+            Assert.assertTrue(change.get("id").asLong() > cursor);
+        }
+    }
+
+    @Test
+    public void changesMadeAfterSubscribingAreStreamed() throws Exception {
+        MockHttpServletResponse response = subscribe(MockMvcRequestBuilders.get("/customers/changes"));
+
+        Customer customer = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        List<JsonNode> changes = awaitChanges(response, 1);
+
+        Assert.assertEquals(customer.getId().longValue(), changes.get(0).get("customerId").asLong());
+        Assert.assertTrue(response.getContentAsString().startsWith("id:" + changes.get(0).get("id").asLong()));
+    }
+
+    @Test
+    public void reconnectingWithTheLastEventIdSkipsTheChangesReceived() throws Exception {
+        Customer first = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        Customer second = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        long firstChange = awaitChanges(subscribe(MockMvcRequestBuilders.get("/customers/changes")
+                .param("since", String.valueOf(cursor))), 2).get(0).get("id").asLong();
+
+        List<JsonNode> changes = awaitChanges(subscribe(MockMvcRequestBuilders.get("/customers/changes")
+                .header("Last-Event-ID", firstChange)), 1);
+
+        Assert.assertEquals(second.getId().longValue(), changes.get(0).get("customerId").asLong());
+        Assert.assertNotEquals(first.getId(), second.getId());
+    }
+
+    @Test
+    public void resumingFromChangesNoLongerRetainedIsGone() throws Exception {
+        customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        long since = changeRepository.findFirstId() - 2;
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/customers/changes")
+                .param("since", String.valueOf(since))).andReturn();
+
+        Assert.assertEquals(HTTP_GONE, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void subscribersTimingOutAreCompletedAndDropped() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/customers/changes")).andReturn();
+        int subscribers = changeFeed.getSubscriberCount();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        Assert.assertEquals(subscribers - 1, changeFeed.getSubscriberCount());
+        // the stream ends as it was, not with the response of a timeout error
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    private MockHttpServletResponse subscribe(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        Assert.assertTrue(result.getRequest().isAsyncStarted());
+        return result.getResponse();
+    }
+
+    /*
+        The data of the first events streamed, once there are as many
+        as expected. Events are written in parts, only the ones ended by
+        a blank line are complete.
+    */
+    private List<JsonNode> awaitChanges(MockHttpServletResponse response, int count) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        List<JsonNode> changes = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline) {
+            changes.clear();
+            String content = response.getContentAsString();
+            String events = content.substring(0, Math.max(0, content.lastIndexOf("\n\n")));
+            for (String line : events.split("\n")) {
+                if (line.startsWith("data:")) {
+                    changes.add(objectMapper.readTree(line.substring("data:".length())));
+                }
+            }
+            if (changes.size() >= count) {
+                return changes.subList(0, count);
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Expected " + count + " changes, got: " + response.getContentAsString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.service.CustomerService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CustomerApiApplication.class, properties = {
+        "customer.executor.pool-size=2",
+        "customer.executor.queue-capacity=1",
+        "customer.executor.retry-after=3s"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class CustomerControllerLoadSheddingTest {
+
+    /*
+        Holds the customer lookups until the request executor and its
+        queue are full, and checks that the next request is shed.
+    */
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerService customerService;
+
+    private final CountDownLatch database = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        database.countDown();
+    }
+
+    @Test
+    public void requestsOverTheQueueCapacityAreRejected() throws Exception {
+        Mockito.when(customerService.findById(1L)).thenAnswer(invocation -> {
+            database.await();
+            return Optional.of(new Customer());
+        });
+
+        List<MvcResult> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            accepted.add(mockMvc.perform(MockMvcRequestBuilders.get("/customers/1")).andReturn());
+        }
+        MvcResult rejected = mockMvc.perform(MockMvcRequestBuilders.get("/customers/1")).andReturn();
+
+        Assert.assertEquals(HTTP_UNAVAILABLE, rejected.getResponse().getStatus());
+        Assert.assertEquals("3", rejected.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+
+        database.countDown();
+        for (MvcResult result : accepted) {
+            MvcResult completed = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andReturn();
+            Assert.assertEquals(HTTP_OK, completed.getResponse().getStatus());
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.crud.example.customerapi.controller
 
 
+import com.crud.example.customerapi.config.AsyncConfig
+import com.crud.example.customerapi.dto.CustomerPage
 import com.crud.example.customerapi.model.Address
 import com.crud.example.customerapi.model.Customer
+import com.crud.example.customerapi.service.CustomerImportService
 import com.crud.example.customerapi.service.CustomerService
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
@@ -10,19 +13,23 @@ import org.spockframework.spring.SpringBean
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
+import org.springframework.context.annotation.Import
 import org.springframework.http.MediaType
 import org.springframework.test.web.servlet.MockMvc
 import org.springframework.test.web.servlet.MvcResult
+import org.springframework.test.web.servlet.RequestBuilder
 
 import java.time.LocalDate
 import java.time.ZoneId
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
 import spock.lang.Specification
 
 @AutoConfigureMockMvc
 @WebMvcTest(controllers = [CustomerController])
+@Import(AsyncConfig)
 class CustomerControllerSpec extends Specification {
 
     /*
@@ -37,17 +44,24 @@ class CustomerControllerSpec extends Specification {
     @SpringBean
     CustomerService customerService = Mock()
 
+    @SpringBean
+    CustomerImportService customerImportService = Mock()
+
     def setup() {
         gson = new GsonBuilder().setDateFormat("dd-MM-yyyy").create()
     }
 
     def "get method performed on /customers endpoint"() {
-        when: "fetching all customers"
-        MvcResult result = mvc.perform(get('/customers')).andReturn()
+        given: "no customer is registered"
+        customerService.findPage(null, null) >> new CustomerPage([], null)
 
-        then: "the response status should be OK (200) and the response string should be empty since no customer is registered"
+        when: "fetching the first page of customers"
+        MvcResult result = perform(get('/customers'))
+
+        then: "the response status should be OK (200) and the response should be an empty list with no next cursor"
         result.getResponse().getStatus() == 200
-        result.getResponse().getContentAsString() == ""
+        result.getResponse().getContentAsString() == "[]"
+        result.getResponse().getHeader("X-Next-Cursor") == null
     }
 
     def "creating a new customer"() {
@@ -55,11 +69,10 @@ class CustomerControllerSpec extends Specification {
         customerService.save(_ as Customer) >> customer
 
         expect: "the status to be returned according to the customer in the request body"
-        MvcResult result = mvc.perform(
+        MvcResult result = perform(
                 post('/customers')
                         .contentType(MediaType.APPLICATION_JSON_VALUE)
                         .content(gson.toJson(customer)))
-                .andReturn()
 
         expectedStatus == result.getResponse().getStatus()
 
@@ -71,6 +84,11 @@ class CustomerControllerSpec extends Specification {
         buildNullDateOfBirthCustomer() | 400
     }
 
+    MvcResult perform(RequestBuilder requestBuilder) {
+        MvcResult result = mvc.perform(requestBuilder).andReturn()
+        // invalid requests are rejected before the handler goes async
+        result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)).andReturn() : result
+    }
 
     Customer buildInvalidCPFCustomer() {
         Customer customer = buildValidCustomer()
@@ -0,0 +1,212 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.cache.CustomerCache;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.crud.example.customerapi.service.CustomerService;
+import com.crud.example.customerapi.sql.SqlStatisticsFilter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static com.crud.example.customerapi.sql.SqlStatisticsMatchers.statements;
+import static com.crud.example.customerapi.sql.SqlStatisticsMatchers.statementsAtMost;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CustomerApiApplication.class, properties = "customer.sql-statistics.headers-enabled=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class CustomerControllerStatementsTest {
+
+    /*
+        Asserts the number of SQL statements each endpoint runs against
+        an in-memory database, so that N+1 selects and chatty writes show
+        up as failing tests.
+    */
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerCache customerCache;
+
+    private Customer customer;
+    private Gson gson;
+
+    @Before
+    public void setUp() {
+        customer = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        customerCache.clear();
+        gson = new GsonBuilder().setDateFormat("dd-MM-yyyy").create();
+    }
+
+    @Test
+    public void findByIdTakesOneStatementThenNone() throws Exception {
+        perform(MockMvcRequestBuilders.get("/customers/" + customer.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(SqlStatisticsFilter.STATEMENTS_HEADER, "1"))
+                .andExpect(statements(1));
+
+        perform(MockMvcRequestBuilders.get("/customers/" + customer.getId()))
+                .andExpect(statements(0));
+    }
+
+    @Test
+    public void findByCpfTakesOneStatement() throws Exception {
+        perform(MockMvcRequestBuilders.get("/customers").param("cpf", customer.getCpf()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(statements(1));
+    }
+
+    @Test
+    public void findFieldsByIdTakesOneStatementWithoutTheAddress() throws Exception {
+        perform(MockMvcRequestBuilders.get("/customers/" + customer.getId()).param("fields", "firstName,lastName,email"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.firstName").value("Joao Ricardo"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.address").doesNotExist())
+                .andExpect(statements(1));
+    }
+
+    @Test
+    public void findByIdsTakesOneStatementForAllTheMisses() throws Exception {
+        Customer other = customerService.save(CustomerFixtures.customer(CustomerFixtures.nextCpf()));
+        customerCache.clear();
+        customerService.findById(customer.getId());
+
+        perform(MockMvcRequestBuilders.get("/customers")
+                .param("ids", customer.getId() + "," + other.getId() + ",-1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.customers.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missingIds[0]").value(-1))
+                .andExpect(statements(1));
+
+        perform(MockMvcRequestBuilders.get("/customers")
+                .param("ids", customer.getId() + "," + other.getId()))
+                .andExpect(statements(0));
+    }
+
+    @Test
+    public void findAPageTakesOneStatement() throws Exception {
+        perform(MockMvcRequestBuilders.get("/customers").param("limit", "5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(statements(1));
+    }
+
+    @Test
+    public void createTakesAtMostFiveStatements() throws Exception {
+        Customer newCustomer = CustomerFixtures.customer(CustomerFixtures.nextCpf());
+        newCustomer.getAddress().setCustomer(null);
+
+        // two inserts and the change logged, plus the sequences when their block of IDs runs out
+        perform(MockMvcRequestBuilders.post("/customers")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(gson.toJson(newCustomer)))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(statementsAtMost(5));
+    }
+
+    @Test
+    public void updateOfACachedCustomerWithIfMatchTakesThreeStatements() throws Exception {
+        customerService.findById(customer.getId());
+        customer.getAddress().setCustomer(null);
+        customer.setFirstName("Maria");
+
+        perform(MockMvcRequestBuilders.put("/customers/" + customer.getId())
+                .header(HttpHeaders.IF_MATCH, "\"" + customer.getVersion() + "\"")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(gson.toJson(customer)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"" + (customer.getVersion() + 1) + "\""))
+                .andExpect(statements(3));
+
+        perform(MockMvcRequestBuilders.get("/customers/" + customer.getId()))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"" + (customer.getVersion() + 1) + "\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.firstName").value("Maria"))
+                .andExpect(statements(0));
+    }
+
+    @Test
+    public void updateCachesACopyOfTheGivenCustomer() {
+        customerService.findById(customer.getId());
+        Customer given = CustomerFixtures.customer(customer.getCpf());
+        given.setFirstName("Maria");
+
+        Customer updated = customerService.update(customer.getId(), customer.getVersion(), given)
+                .orElseThrow(AssertionError::new);
+        given.setFirstName("Ana");
+        given.getAddress().setNumber(72);
+
+        Assert.assertNotSame(given, updated);
+        Customer cached = customerCache.get(customer.getId());
+        Assert.assertEquals("Maria", cached.getFirstName());
+        Assert.assertEquals(71, cached.getAddress().getNumber());
+        Assert.assertEquals(Long.valueOf(customer.getVersion() + 1), cached.getVersion());
+        Assert.assertEquals(customer.getAddress().getId(), cached.getAddress().getId());
+    }
+
+    @Test
+    public void updateOfAnUncachedCustomerReadsItBack() throws Exception {
+        customer.getAddress().setCustomer(null);
+        customer.setFirstName("Maria");
+
+        // the version and address ID come from a read of the stored customer
+        perform(MockMvcRequestBuilders.put("/customers/" + customer.getId())
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(gson.toJson(customer)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"" + (customer.getVersion() + 1) + "\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.firstName").value("Maria"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.address.id").value(customer.getAddress().getId()))
+                .andExpect(statements(4));
+
+        perform(MockMvcRequestBuilders.get("/customers/" + customer.getId()))
+                .andExpect(statements(0));
+    }
+
+    @Test
+    public void patchOfCustomerFieldsTakesTwoStatements() throws Exception {
+        perform(MockMvcRequestBuilders.patch("/customers/" + customer.getId())
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"firstName\": \"Maria\"}"))
+                .andExpect(MockMvcResultMatchers.status().isNoContent())
+                .andExpect(statements(2));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    public void deleteTakesThreeStatements() throws Exception {
+        perform(MockMvcRequestBuilders.delete("/customers/" + customer.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(statements(3));
+    }
+
+    private ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
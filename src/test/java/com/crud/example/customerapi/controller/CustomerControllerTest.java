@@ -1,23 +1,37 @@
 package com.crud.example.customerapi.controller;
 
 import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.dto.CustomerChanges;
+import com.crud.example.customerapi.dto.CustomerLookup;
+import com.crud.example.customerapi.dto.CustomerPage;
+import com.crud.example.customerapi.dto.CustomerStatistics;
+import com.crud.example.customerapi.dto.CustomerSummary;
+import com.crud.example.customerapi.exception.NotReadyException;
 import com.crud.example.customerapi.model.Address;
 import com.crud.example.customerapi.model.Customer;
 import com.crud.example.customerapi.service.CustomerService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
@@ -28,20 +42,30 @@ import org.springframework.web.context.WebApplicationContext;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_PRECON_FAILED;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = CustomerApiApplication.class)
 @WebAppConfiguration
 @AutoConfigureMockMvc
+@ActiveProfiles("test")
 public class CustomerControllerTest {
 
     @Autowired
@@ -56,27 +80,258 @@ public class CustomerControllerTest {
     private Address mockAddress;
     private Customer mockCustomer;
     private Gson gson;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
 
     @Before
     public void setUp() {
         mockAddress = setUpAddress();
         mockCustomer = setUpCustomer(mockAddress);
         gson = new GsonBuilder().setDateFormat("dd-MM-yyyy").create();
+        cborMapper = new ObjectMapper(new CBORFactory());
+        smileMapper = new ObjectMapper(new SmileFactory());
     }
 
     @Test
     public void retrieveAllCustomers() throws Exception {
-        Mockito.when(customerService.findAll()).thenReturn(Collections.singletonList(mockCustomer));
+        Mockito.when(customerService.findPage(null, null))
+                .thenReturn(new CustomerPage<>(Collections.singletonList(mockCustomer), null));
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers")
                 .accept(MediaType.APPLICATION_JSON_VALUE);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
 
         String expected = gson.toJson(Collections.singletonList(mockCustomer));
 
         JSONAssert.assertEquals(expected, result.getResponse().getContentAsString() , true);
         Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertNull(result.getResponse().getHeader("X-Next-Cursor"));
+    }
+
+    @Test
+    public void retrieveAPageOfCustomersWithNextCursor() throws Exception {
+        Mockito.when(customerService.findPage(0L, 1))
+                .thenReturn(new CustomerPage<>(Collections.singletonList(mockCustomer), mockCustomer.getId()));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?after=0&limit=1")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals("1", result.getResponse().getHeader("X-Next-Cursor"));
+        Assert.assertEquals("<http://localhost/customers?after=1&limit=1>; rel=\"next\"",
+                result.getResponse().getHeader("Link"));
+    }
+
+    @Test
+    public void retrieveAPageOfCustomersWithInvalidLimit() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?limit=0")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void retrieveCustomersByIdsReportingTheMissingOnes() throws Exception {
+        Mockito.when(customerService.findAllById(Arrays.asList(1L, 2L)))
+                .thenReturn(new CustomerLookup(Collections.singletonList(mockCustomer), Collections.singletonList(2L)));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?ids=1,2")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        String expected = "{\"customers\":" + gson.toJson(Collections.singletonList(mockCustomer)) + ",\"missingIds\":[2]}";
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        JSONAssert.assertEquals(expected, result.getResponse().getContentAsString(), true);
+    }
+
+    @Test
+    public void retrieveCustomersByIdsInTheRequestBody() throws Exception {
+        Mockito.when(customerService.findAllById(Arrays.asList(1L, 2L)))
+                .thenReturn(new CustomerLookup(Collections.singletonList(mockCustomer), Collections.singletonList(2L)));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/customers/lookup")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[1, 2]");
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        JSONAssert.assertEquals("{\"missingIds\":[2]}", result.getResponse().getContentAsString(), false);
+    }
+
+    @Test
+    public void retrieveCustomersByTooManyIds() throws Exception {
+        String ids = LongStream.rangeClosed(1, 501)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?ids=" + ids)
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).findAllById(Mockito.any());
+    }
+
+    @Test
+    public void retrieveOnlyTheGivenFieldsOfACustomer() throws Exception {
+        mockCustomer.setVersion(3L);
+        Mockito.when(customerService.findSummaryById(1L))
+                .thenReturn(Optional.of(CustomerSummary.of(mockCustomer)));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1?fields=firstName,email")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals("\"3\"", result.getResponse().getHeader("ETag"));
+        JSONAssert.assertEquals("{\"firstName\":\"Joao Ricardo\",\"email\":\"jrdasilva@gmail.com\"}",
+                result.getResponse().getContentAsString(), true);
+        Mockito.verify(customerService, Mockito.never()).findById(Mockito.any());
+    }
+
+    @Test
+    public void retrieveTheAddressOnlyWhenItIsAGivenField() throws Exception {
+        Mockito.when(customerService.findPage(null, 1))
+                .thenReturn(new CustomerPage<>(Collections.singletonList(mockCustomer), mockCustomer.getId()));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?fields=cpf,address&limit=1")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        String expected = "[{\"cpf\":\"93350016006\",\"address\":" + gson.toJson(mockAddress) + "}]";
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        JSONAssert.assertEquals(expected, result.getResponse().getContentAsString(), true);
+        Assert.assertEquals("<http://localhost/customers?fields=cpf,address&after=1&limit=1>; rel=\"next\"",
+                result.getResponse().getHeader("Link"));
+        Mockito.verify(customerService, Mockito.never()).findSummaryPage(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void retrieveAnUnknownFieldOfACustomer() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1?fields=firstName,password")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void retrieveCustomerStatistics() throws Exception {
+        Mockito.when(customerService.statistics())
+                .thenReturn(new CustomerStatistics(1, Collections.singletonMap("SP", 1),
+                        Collections.singletonMap("SP", Collections.singletonMap("Campinas", 1)),
+                        Collections.singletonMap("25-34", 1)));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/stats")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        JSONAssert.assertEquals("{\"total\":1,\"byUf\":{\"SP\":1},\"byCity\":{\"SP\":{\"Campinas\":1}},"
+                + "\"byAgeBracket\":{\"25-34\":1}}", result.getResponse().getContentAsString(), true);
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void retrieveCustomerStatisticsNotCountedYet() throws Exception {
+        Mockito.when(customerService.statistics())
+                .thenThrow(new NotReadyException("The customer statistics are not counted yet, try again later."));
+
+        MvcResult result = perform(MockMvcRequestBuilders.get("/customers/stats"));
+
+        Assert.assertEquals(HTTP_UNAVAILABLE, result.getResponse().getStatus());
+        Assert.assertNotNull(result.getResponse().getHeader("Retry-After"));
+    }
+
+    @Test
+    public void searchCustomers() throws Exception {
+        Mockito.when(customerService.search("joao silva", 5))
+                .thenReturn(Collections.singletonList(mockCustomer));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/search?q=joao silva&limit=5")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        String expected = gson.toJson(Collections.singletonList(mockCustomer));
+
+        JSONAssert.assertEquals(expected, result.getResponse().getContentAsString(), true);
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void searchCustomersWithABlankQuery() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/search?q= ")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).search(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportAllCustomers() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(mockCustomer);
+            consumer.accept(mockCustomer);
+            return null;
+        }).when(customerService).export(Mockito.any(Consumer.class));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/export");
+
+        MvcResult result = perform(requestBuilder);
+
+        String content = result.getResponse().getContentAsString();
+        String[] lines = content.split("\n");
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals("application/x-ndjson", result.getResponse().getContentType());
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue("The last customer does not end its line.", content.endsWith("\n"));
+        JSONAssert.assertEquals(jsonCustomer, lines[0], true);
+        JSONAssert.assertEquals(jsonCustomer, lines[1], true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportAllCustomersAsSmile() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(mockCustomer);
+            consumer.accept(mockCustomer);
+            return null;
+        }).when(customerService).export(Mockito.any(Consumer.class));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/export")
+                .accept("application/x-jackson-smile");
+
+        MvcResult result = perform(requestBuilder);
+
+        List<JsonNode> customers = smileMapper.readerFor(JsonNode.class)
+                .<JsonNode>readValues(result.getResponse().getContentAsByteArray())
+                .readAll();
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals("application/x-jackson-smile", result.getResponse().getContentType());
+        Assert.assertEquals(2, customers.size());
+        JSONAssert.assertEquals(gson.toJson(mockCustomer), customers.get(1).toString(), true);
     }
 
     @Test
@@ -88,7 +343,7 @@ public class CustomerControllerTest {
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers?cpf=" + cpf);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
         String jsonCustomer = gson.toJson(Collections.singletonList(mockCustomer));
 
         JSONAssert.assertEquals(jsonCustomer, result.getResponse().getContentAsString() , true);
@@ -103,7 +358,7 @@ public class CustomerControllerTest {
         RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1")
                 .accept(MediaType.APPLICATION_JSON_VALUE);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
 
         String jsonCustomer = gson.toJson(mockCustomer);
 
@@ -111,6 +366,55 @@ public class CustomerControllerTest {
         Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
     }
 
+    @Test
+    public void retrieveACustomerByIDAsCbor() throws Exception {
+        Mockito.when(customerService.findById(1L))
+                .thenReturn(Optional.of(mockCustomer));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1")
+                .accept(MediaType.APPLICATION_CBOR_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        JsonNode customer = cborMapper.readTree(result.getResponse().getContentAsByteArray());
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType());
+        JSONAssert.assertEquals(gson.toJson(mockCustomer), customer.toString(), true);
+    }
+
+    @Test
+    public void retrieveACustomerByIDWithItsVersionAsETag() throws Exception {
+        mockCustomer.setVersion(3L);
+        Mockito.when(customerService.findById(Mockito.anyLong()))
+                .thenReturn(Optional.of(mockCustomer));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals("\"3\"", result.getResponse().getHeader("ETag"));
+        Assert.assertFalse(result.getResponse().getContentAsString().contains("version"));
+    }
+
+    @Test
+    public void retrieveAnUnchangedCustomerByID() throws Exception {
+        mockCustomer.setVersion(3L);
+        Mockito.when(customerService.findById(Mockito.anyLong()))
+                .thenReturn(Optional.of(mockCustomer));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/customers/1")
+                .header("If-None-Match", "\"3\"")
+                .accept(MediaType.APPLICATION_JSON_VALUE);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_NOT_MODIFIED, result.getResponse().getStatus());
+        Assert.assertEquals("", result.getResponse().getContentAsString());
+    }
+
     @Test
     public void createANewCustomer() throws Exception {
         Mockito.when(customerService.save(Mockito.any(Customer.class)))
@@ -122,12 +426,29 @@ public class CustomerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
 
         JSONAssert.assertEquals(jsonCustomer, result.getResponse().getContentAsString() , true);
         Assert.assertEquals(HTTP_CREATED, result.getResponse().getStatus());
     }
 
+    @Test
+    public void createANewCustomerFromSmile() throws Exception {
+        Mockito.when(customerService.save(Mockito.any(Customer.class)))
+                .thenReturn(mockCustomer);
+
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/customers/")
+                .contentType("application/x-jackson-smile")
+                .content(smileMapper.writeValueAsBytes(new ObjectMapper().readTree(jsonCustomer)));
+
+        MvcResult result = perform(requestBuilder);
+
+        JSONAssert.assertEquals(jsonCustomer, result.getResponse().getContentAsString(), true);
+        Assert.assertEquals(HTTP_CREATED, result.getResponse().getStatus());
+    }
+
     @Test
     public void createANewCustomerWithInvalidCPF() throws Exception {
         mockCustomer.setCpf("0000111000");
@@ -140,33 +461,134 @@ public class CustomerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
 
         Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
     }
 
+    @Test
+    public void createCustomersInBatch() throws Exception {
+        Customer conflicting = setUpCustomer(setUpAddress());
+        conflicting.setCpf("52998224725");
+        Customer invalid = setUpCustomer(setUpAddress());
+        invalid.setCpf("0000111000");
+
+        Mockito.when(customerService.findExistingCpfs(Mockito.anyCollection()))
+                .thenReturn(Collections.singleton("52998224725"));
+        Mockito.when(customerService.saveAll(Mockito.anyList()))
+                .thenAnswer(invocation -> {
+                    List<Customer> customers = invocation.getArgument(0);
+                    customers.forEach(customer -> customer.setId(10L));
+                    return customers;
+                });
+
+        String ndjson = gson.toJson(mockCustomer) + "\n" + gson.toJson(invalid) + "\n" + gson.toJson(conflicting) + "\n";
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/customers/batch")
+                .contentType("application/x-ndjson")
+                .content(ndjson);
+
+        MvcResult result = perform(requestBuilder);
+
+        String expected = "{created: 1, invalid: 1, conflicts: 1, items: ["
+                + "{index: 1, status: INVALID, cpf: '0000111000'},"
+                + "{index: 2, status: CONFLICT, cpf: '52998224725'},"
+                + "{index: 0, status: CREATED, id: 10, cpf: '93350016006'}]}";
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        JSONAssert.assertEquals(expected, result.getResponse().getContentAsString(), false);
+    }
+
+    @Test
+    public void createCustomersInBatchFromCbor() throws Exception {
+        Mockito.when(customerService.findExistingCpfs(Mockito.anyCollection()))
+                .thenReturn(Collections.emptySet());
+        Mockito.when(customerService.saveAll(Mockito.anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        byte[] customers = cborMapper.writeValueAsBytes(new ObjectMapper().readTree(gson.toJson(Collections.singletonList(mockCustomer))));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/customers/batch")
+                .contentType(MediaType.APPLICATION_CBOR_VALUE)
+                .accept(MediaType.APPLICATION_CBOR_VALUE)
+                .content(customers);
+
+        MvcResult result = perform(requestBuilder);
+
+        JsonNode batchResult = cborMapper.readTree(result.getResponse().getContentAsByteArray());
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertEquals(1, batchResult.get("created").asInt());
+    }
+
     @Test
     public void updateAnExistingCustomer() throws Exception {
-        Mockito.when(customerService.findById(Mockito.anyLong()))
+        Mockito.when(customerService.update(Mockito.eq(1L), Mockito.isNull(), Mockito.any(Customer.class)))
                 .thenReturn(Optional.of(mockCustomer));
 
-        Mockito.when(customerService.save(Mockito.any(Customer.class)))
-                .thenReturn(mockCustomer);
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/1")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(jsonCustomer);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    public void updateACustomerBasedOnAnOutdatedVersion() throws Exception {
+        Mockito.when(customerService.update(Mockito.eq(1L), Mockito.eq(2L), Mockito.any(Customer.class)))
+                .thenThrow(new OptimisticLockingFailureException("Customer with ID 1 changed since version 2."));
 
         String jsonCustomer = gson.toJson(mockCustomer);
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/1")
+                .header("If-Match", "\"2\"")
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_PRECON_FAILED, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void updateACustomerMatchingOneOfTheVersionsGiven() throws Exception {
+        mockCustomer.setVersion(3L);
+        Mockito.when(customerService.findById(1L)).thenReturn(Optional.of(mockCustomer));
+        Mockito.when(customerService.update(Mockito.eq(1L), Mockito.eq(3L), Mockito.any(Customer.class)))
+                .thenReturn(Optional.of(mockCustomer));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/1")
+                .header("If-Match", "\"2\", \"3\"")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(gson.toJson(mockCustomer));
+
+        MvcResult result = perform(requestBuilder);
 
         Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
     }
 
+    @Test
+    public void updateACustomerWithAWeakVersion() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/1")
+                .header("If-Match", "W/\"2\"")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(gson.toJson(mockCustomer));
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_PRECON_FAILED, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never())
+                .update(Mockito.anyLong(), Mockito.any(), Mockito.any(Customer.class));
+    }
+
     @Test
     public void updateANonExistingCustomer() throws Exception {
-        Mockito.when(customerService.findById(Mockito.anyLong()))
+        Mockito.when(customerService.update(Mockito.anyLong(), Mockito.any(), Mockito.any(Customer.class)))
                 .thenReturn(Optional.empty());
 
         String jsonCustomer = gson.toJson(mockCustomer);
@@ -175,7 +597,118 @@ public class CustomerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_NOT_FOUND, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void upsertANewCustomerByCPF() throws Exception {
+        Mockito.when(customerService.upsertByCpf(Mockito.any(Customer.class)))
+                .thenAnswer(invocation -> {
+                    Customer customer = invocation.getArgument(0);
+                    customer.setId(10L);
+                    customer.setVersion(0L);
+                    return true;
+                });
+
+        mockCustomer.setCpf(null);
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/by-cpf/93350016006")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(jsonCustomer);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_CREATED, result.getResponse().getStatus());
+        Assert.assertEquals("http://localhost/customers/10", result.getResponse().getHeader("Location"));
+        Assert.assertEquals("\"0\"", result.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    public void upsertAnExistingCustomerByCPF() throws Exception {
+        Mockito.when(customerService.upsertByCpf(Mockito.any(Customer.class)))
+                .thenReturn(false);
+
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/by-cpf/93350016006")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(jsonCustomer);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void upsertACustomerWithAnotherCPF() throws Exception {
+        String jsonCustomer = gson.toJson(mockCustomer);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.put("/customers/by-cpf/52998224725")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(jsonCustomer);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).upsertByCpf(Mockito.any(Customer.class));
+    }
+
+    @Test
+    public void patchTheGivenFieldsOfACustomer() throws Exception {
+        ArgumentCaptor<CustomerChanges> changes = ArgumentCaptor.forClass(CustomerChanges.class);
+        Mockito.when(customerService.patch(Mockito.eq(1L), Mockito.eq(2L), changes.capture()))
+                .thenReturn(true);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.patch("/customers/1")
+                .header("If-Match", "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"email\": \"joao@gmail.com\", \"address\": {\"number\": 72}}");
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_NO_CONTENT, result.getResponse().getStatus());
+        Assert.assertEquals("\"3\"", result.getResponse().getHeader("ETag"));
+        Assert.assertEquals(Collections.singletonMap("email", "joao@gmail.com"), changes.getValue().getCustomer());
+        Assert.assertEquals(Collections.singletonMap("number", 72), changes.getValue().getAddress());
+    }
+
+    @Test
+    public void patchACustomerWithAnInvalidField() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.patch("/customers/1")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"cpf\": \"12345678900\"}");
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never())
+                .patch(Mockito.anyLong(), Mockito.any(), Mockito.any(CustomerChanges.class));
+    }
+
+    @Test
+    public void patchTheIdOfACustomer() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.patch("/customers/1")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"id\": 2}");
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_BAD_REQUEST, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void patchANonExistingCustomer() throws Exception {
+        Mockito.when(customerService.patch(Mockito.anyLong(), Mockito.any(), Mockito.any(CustomerChanges.class)))
+                .thenReturn(false);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.patch("/customers/1")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("{\"firstName\": \"Maria\"}");
+
+        MvcResult result = perform(requestBuilder);
 
         Assert.assertEquals(HTTP_NOT_FOUND, result.getResponse().getStatus());
     }
@@ -191,7 +724,7 @@ public class CustomerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
 
         Assert.assertEquals(HTTP_UNAUTHORIZED, result.getResponse().getStatus());
     }
@@ -199,8 +732,8 @@ public class CustomerControllerTest {
     @Test
     @WithMockUser(username = "admin", roles = "ADMIN")
     public void deleteACustomer() throws Exception {
-        Mockito.when(customerService.findById(Mockito.anyLong()))
-                .thenReturn(Optional.of(mockCustomer));
+        Mockito.when(customerService.deleteById(1L))
+                .thenReturn(true);
 
         String jsonCustomer = gson.toJson(mockCustomer);
 
@@ -208,11 +741,115 @@ public class CustomerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
                 .content(jsonCustomer);
 
-        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void deleteACustomerWithAToken() throws Exception {
+        Mockito.when(customerService.deleteById(1L))
+                .thenReturn(true);
+
+        String token = issueToken();
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.delete("/customers/1")
+                .header("Authorization", "Bearer " + token);
+
+        MvcResult result = perform(requestBuilder);
 
         Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
     }
+
+    @Test
+    public void deleteACustomerWithARevokedToken() throws Exception {
+        String token = issueToken();
+        MvcResult revoked = perform(MockMvcRequestBuilders.delete("/auth/tokens")
+                .header("Authorization", "Bearer " + token));
+        Assert.assertEquals(HTTP_NO_CONTENT, revoked.getResponse().getStatus());
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.delete("/customers/1")
+                .header("Authorization", "Bearer " + token);
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_UNAUTHORIZED, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).deleteById(1L);
+    }
+
+    @Test
+    public void deleteACustomerWithAnInvalidToken() throws Exception {
+        String token = issueToken();
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.delete("/customers/1")
+                .header("Authorization", "Bearer " + token.substring(0, token.length() - 2));
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_UNAUTHORIZED, result.getResponse().getStatus());
+        Mockito.verify(customerService, Mockito.never()).deleteById(1L);
+    }
+
+    @Test
+    public void issueATokenWithAWrongPassword() throws Exception {
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/auth/tokens")
+                .with(SecurityMockMvcRequestPostProcessors.httpBasic("admin", "wrong"));
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_UNAUTHORIZED, result.getResponse().getStatus());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    public void deleteANonExistingCustomer() throws Exception {
+        Mockito.when(customerService.deleteById(1L))
+                .thenReturn(false);
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.delete("/customers/1");
+
+        MvcResult result = perform(requestBuilder);
+
+        Assert.assertEquals(HTTP_NOT_FOUND, result.getResponse().getStatus());
+    }
     
+    @Test
+    public void scrapeMetricsInPrometheusFormat() throws Exception {
+        Mockito.when(customerService.findById(1L))
+                .thenReturn(Optional.of(mockCustomer));
+        perform(MockMvcRequestBuilders.get("/customers/1"));
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/actuator/prometheus");
+
+        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+
+        String metrics = result.getResponse().getContentAsString();
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        Assert.assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+        Assert.assertTrue(metrics.contains("uri=\"/customers/{id}\""));
+        Assert.assertTrue(metrics.contains("hikaricp_connections_pending{"));
+        Assert.assertTrue(metrics.contains("cache_gets_total{"));
+        Assert.assertTrue(metrics.contains("hibernate_statements_total{"));
+        Assert.assertTrue(metrics.contains("executor_queued_tasks{"));
+    }
+
+    /*
+        Performs the request, following the async dispatch of the
+        endpoints that run on the request executor.
+    */
+    private String issueToken() throws Exception {
+        MvcResult result = perform(MockMvcRequestBuilders.post("/auth/tokens")
+                .with(SecurityMockMvcRequestPostProcessors.httpBasic("admin", "password")));
+        Assert.assertEquals(HTTP_OK, result.getResponse().getStatus());
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+
+    private MvcResult perform(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        if (!result.getRequest().isAsyncStarted()) {
+            return result;
+        }
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andReturn();
+    }
+
     private Address setUpAddress() {
         Address address = new Address();
         address.setId(1L);
@@ -0,0 +1,129 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.CustomerApiApplication;
+import com.crud.example.customerapi.TestPostgres;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import com.crud.example.customerapi.service.CustomerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.net.HttpURLConnection.HTTP_CREATED;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+public class CustomerUpsertTest {
+
+    /*
+        PUT /customers/by-cpf/{cpf} against PostgreSQL (see TestPostgres),
+        as its single statement upsert does not run on H2.
+    */
+
+    private static ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+    private ObjectMapper objectMapper;
+    private CustomerService customerService;
+    private final List<Long> customerIds = new ArrayList<>();
+
+    @BeforeClass
+    public static void startApplication() {
+        TestPostgres.require();
+        context = new SpringApplicationBuilder(CustomerApiApplication.class)
+                .properties(TestPostgres.datasourceProperties())
+                .properties("server.port=0")
+                .run();
+    }
+
+    @AfterClass
+    public static void stopApplication() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(SecurityMockMvcConfigurers.springSecurity())
+                .build();
+        objectMapper = context.getBean(ObjectMapper.class);
+        customerService = context.getBean(CustomerService.class);
+    }
+
+    @After
+    public void tearDown() {
+        customerIds.forEach(customerService::deleteById);
+    }
+
+    @Test
+    public void upsertCreatesTheCustomerThenReplacesIt() throws Exception {
+        String cpf = CustomerFixtures.randomCpf();
+
+        MvcResult created = upsert(CustomerFixtures.customer(cpf));
+        Assert.assertEquals(HTTP_CREATED, created.getResponse().getStatus());
+        Assert.assertEquals("\"0\"", created.getResponse().getHeader("ETag"));
+        Customer stored = objectMapper.readValue(created.getResponse().getContentAsString(), Customer.class);
+        customerIds.add(stored.getId());
+        Assert.assertEquals("http://localhost/customers/" + stored.getId(),
+                created.getResponse().getHeader("Location"));
+
+        Customer replacement = CustomerFixtures.customer(cpf);
+        replacement.setFirstName("Maria");
+        MvcResult replaced = upsert(replacement);
+        Assert.assertEquals(HTTP_OK, replaced.getResponse().getStatus());
+        Assert.assertEquals("\"1\"", replaced.getResponse().getHeader("ETag"));
+        Customer updated = objectMapper.readValue(replaced.getResponse().getContentAsString(), Customer.class);
+        Assert.assertEquals(stored.getId(), updated.getId());
+        Assert.assertEquals(stored.getAddress().getId(), updated.getAddress().getId());
+
+        Customer found = customerService.findById(stored.getId()).orElseThrow(AssertionError::new);
+        Assert.assertEquals("Maria", found.getFirstName());
+        Assert.assertEquals(Long.valueOf(1), found.getVersion());
+    }
+
+    @Test
+    public void upsertsAndSavesTakeTheirIdsFromTheSameAllocator() throws Exception {
+        HashSet<Long> customerIdsSeen = new HashSet<>();
+        HashSet<Long> addressIdsSeen = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            MvcResult created = upsert(CustomerFixtures.customer(CustomerFixtures.randomCpf()));
+            Assert.assertEquals(HTTP_CREATED, created.getResponse().getStatus());
+            Customer upserted = objectMapper.readValue(created.getResponse().getContentAsString(), Customer.class);
+            customerIds.add(upserted.getId());
+
+            Customer saved = customerService.save(CustomerFixtures.customer(CustomerFixtures.randomCpf()));
+            customerIds.add(saved.getId());
+
+            Assert.assertTrue(customerIdsSeen.add(upserted.getId()));
+            Assert.assertTrue(customerIdsSeen.add(saved.getId()));
+            Assert.assertTrue(addressIdsSeen.add(upserted.getAddress().getId()));
+            Assert.assertTrue(addressIdsSeen.add(saved.getAddress().getId()));
+        }
+    }
+
+    private MvcResult upsert(Customer customer) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.put("/customers/by-cpf/" + customer.getCpf())
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(objectMapper.writeValueAsString(customer)))
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andReturn();
+    }
+}
@@ -0,0 +1,53 @@
+package com.crud.example.customerapi.controller;
+
+import com.crud.example.customerapi.exception.PreconditionFailedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ETagsTest {
+
+    @Test
+    public void updatesWithoutIfMatchOrWithAnyAreUnconditional() {
+        Assert.assertNull(ETags.matchingVersions(null));
+        Assert.assertNull(ETags.matchingVersions(" * "));
+        Assert.assertNull(ETags.expectedVersion(null, () -> {
+            throw new AssertionError("No version is looked up.");
+        }));
+    }
+
+    @Test
+    public void ifMatchListsStrongETags() {
+        Assert.assertEquals(Collections.singletonList(2L), ETags.matchingVersions("\"2\""));
+        Assert.assertEquals(Arrays.asList(2L, 3L), ETags.matchingVersions("\"2\", \"3\""));
+        // weak ETags, and the ones of something else, never match
+        Assert.assertEquals(Collections.singletonList(3L), ETags.matchingVersions("W/\"2\", \"abc\",\"3\""));
+    }
+
+    @Test(expected = PreconditionFailedException.class)
+    public void onlyWeakETagsNeverMatch() {
+        ETags.matchingVersions("W/\"3\"");
+    }
+
+    @Test(expected = PreconditionFailedException.class)
+    public void ETagsOfSomethingElseNeverMatch() {
+        ETags.matchingVersions("3, \"abc\"");
+    }
+
+    @Test
+    public void ofSeveralVersionsTheCurrentOneIsExpected() {
+        Assert.assertEquals(Long.valueOf(2), ETags.expectedVersion(Collections.singletonList(2L), () -> {
+            throw new AssertionError("No version is looked up for a single one.");
+        }));
+        Assert.assertEquals(Long.valueOf(3), ETags.expectedVersion(Arrays.asList(2L, 3L), () -> 3L));
+        // the update then finds no customer
+        Assert.assertEquals(Long.valueOf(2), ETags.expectedVersion(Arrays.asList(2L, 3L), () -> null));
+    }
+
+    @Test(expected = PreconditionFailedException.class)
+    public void ofSeveralVersionsNoneBeingCurrentFails() {
+        ETags.expectedVersion(Arrays.asList(2L, 3L), () -> 4L);
+    }
+}
@@ -0,0 +1,112 @@
+package com.crud.example.customerapi.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.net.HttpURLConnection.HTTP_PRECON_FAILED;
+
+public class ReadYourWritesFilterTest {
+
+    private static final Duration WINDOW = Duration.ofSeconds(5);
+
+    @Test
+    public void readsFromThePrimaryOnAnyNodeAfterAWrite() throws ServletException, IOException {
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        new ReadYourWritesFilter(WINDOW).doFilter(new MockHttpServletRequest("PUT", "/customers/1"), written,
+                (request, response) -> WriteTracking.written());
+        Cookie cookie = written.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE);
+        String header = written.getHeader(ReadYourWritesFilter.LAST_WRITE_HEADER);
+
+        // read on another node, sending back the cookie or the header
+        MockHttpServletRequest withCookie = new MockHttpServletRequest("GET", "/customers/1");
+        withCookie.setCookies(cookie);
+        Assert.assertTrue(readsFromThePrimary(withCookie));
+        MockHttpServletRequest withHeader = new MockHttpServletRequest("GET", "/customers/1");
+        withHeader.addHeader(ReadYourWritesFilter.LAST_WRITE_HEADER, header);
+        Assert.assertTrue(readsFromThePrimary(withHeader));
+        Assert.assertFalse(readsFromThePrimary(new MockHttpServletRequest("GET", "/customers/1")));
+    }
+
+    @Test
+    public void requestsChangingNothingAreNotHandedTheTimeOfAWrite() throws ServletException, IOException {
+        MockHttpServletResponse lookedUp = new MockHttpServletResponse();
+        new ReadYourWritesFilter(WINDOW).doFilter(new MockHttpServletRequest("POST", "/customers/lookup"), lookedUp,
+                (request, response) -> { });
+        Assert.assertNull(lookedUp.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+        Assert.assertNull(lookedUp.getHeader(ReadYourWritesFilter.LAST_WRITE_HEADER));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        new ReadYourWritesFilter(WINDOW).doFilter(new MockHttpServletRequest("PUT", "/customers/1"), rejected,
+                (request, response) -> ((HttpServletResponse) response).sendError(HTTP_PRECON_FAILED));
+        Assert.assertNull(rejected.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+    }
+
+    @Test
+    public void anAsyncWriteIsHandedTheTimeWhenItsResponseIsDispatched() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/customers/1");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+        DeferredResult<String> result = new DeferredResult<>();
+        List<Runnable> handlers = new ArrayList<>();
+
+        new ReadYourWritesFilter(WINDOW).doFilter(request, response, (chainRequest, chainResponse) -> {
+            try {
+                asyncManager.startDeferredResultProcessing(result);
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+            // as submitted to the executors
+            handlers.add(WriteTracking.decorate(WriteTracking::written));
+        });
+        Assert.assertNull(response.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+
+        Thread executor = new Thread(handlers.get(0));
+        executor.start();
+        executor.join();
+        result.setResult("written");
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        new ReadYourWritesFilter(WINDOW).doFilter(request, response, (chainRequest, chainResponse) -> { });
+        Assert.assertNotNull(response.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+        Assert.assertNotNull(response.getHeader(ReadYourWritesFilter.LAST_WRITE_HEADER));
+    }
+
+    @Test
+    public void readsFromTheReplicasOnceTheWindowIsOver() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.LAST_WRITE_COOKIE,
+                Long.toString(System.currentTimeMillis() - WINDOW.toMillis())));
+        Assert.assertFalse(readsFromThePrimary(request));
+
+        MockHttpServletRequest malformed = new MockHttpServletRequest("GET", "/customers/1");
+        malformed.addHeader(ReadYourWritesFilter.LAST_WRITE_HEADER, "yesterday");
+        Assert.assertFalse(readsFromThePrimary(malformed));
+    }
+
+    private static boolean readsFromThePrimary(MockHttpServletRequest request) throws ServletException, IOException {
+        AtomicBoolean forced = new AtomicBoolean();
+        FilterChain chain = (chainRequest, chainResponse) -> forced.set(PrimaryRouting.isForced());
+        new ReadYourWritesFilter(WINDOW).doFilter(request, new MockHttpServletResponse(), chain);
+        Assert.assertFalse(PrimaryRouting.isForced());
+        return forced.get();
+    }
+}
@@ -0,0 +1,173 @@
+package com.crud.example.customerapi.datasource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReplicaRoutingDataSourceTest {
+
+    /*
+        Routes transactions between two in-memory databases, each one
+        telling its name, standing for the primary and a replica.
+    */
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @Before
+    public void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @After
+    public void tearDown() {
+        PrimaryRouting.release();
+    }
+
+    @Test
+    public void readOnlyTransactionsGoToTheReplica() {
+        ReplicaRoutingDataSource routing = routing(replica);
+
+        Assert.assertEquals("replica", nodeName(routing, true));
+    }
+
+    @Test
+    public void otherTransactionsGoToThePrimary() {
+        ReplicaRoutingDataSource routing = routing(replica);
+
+        Assert.assertEquals("primary", nodeName(routing, false));
+    }
+
+    @Test
+    public void forcedReadsGoToThePrimary() {
+        ReplicaRoutingDataSource routing = routing(replica);
+
+        String node = PrimaryRouting.call(() -> nodeName(routing, true));
+
+        Assert.assertEquals("primary", node);
+        Assert.assertEquals("replica", nodeName(routing, true));
+    }
+
+    @Test
+    public void replicasAreNotReadBeforeTheFirstHealthCheck() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas);
+
+        Assert.assertEquals("primary", nodeName(routing, true));
+        Assert.assertEquals(Boolean.FALSE, routing.getReplicaHealth().get("replica-1"));
+    }
+
+    @Test
+    public void readsFallBackToThePrimaryWhileTheReplicaIsDown() {
+        AtomicBoolean up = new AtomicBoolean(true);
+        ReplicaRoutingDataSource routing = routing(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (!up.get()) {
+                    throw new SQLException("Connection refused");
+                }
+                return replica.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getConnection();
+            }
+        });
+        up.set(false);
+
+        Assert.assertEquals("primary", nodeName(routing, true));
+        Assert.assertEquals(Boolean.FALSE, routing.getReplicaHealth().get("replica-1"));
+
+        routing.checkReplicas();
+
+        Assert.assertEquals(Boolean.FALSE, routing.getReplicaHealth().get("replica-1"));
+
+        up.set(true);
+        routing.checkReplicas();
+
+        Assert.assertEquals(Boolean.TRUE, routing.getReplicaHealth().get("replica-1"));
+        Assert.assertEquals("replica", nodeName(routing, true));
+    }
+
+    @Test
+    public void aBusyReplicaStaysUpWhileTheReadGoesToThePrimary() {
+        AtomicBoolean busy = new AtomicBoolean(false);
+        ReplicaRoutingDataSource routing = routing(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (busy.get()) {
+                    throw new SQLTransientConnectionException("replica-1 - Connection is not available, "
+                            + "request timed out after 1000ms.");
+                }
+                return replica.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getConnection();
+            }
+        });
+        busy.set(true);
+
+        Assert.assertEquals("primary", nodeName(routing, true));
+        Assert.assertEquals(Boolean.TRUE, routing.getReplicaHealth().get("replica-1"));
+
+        busy.set(false);
+
+        Assert.assertEquals("replica", nodeName(routing, true));
+    }
+
+    @Test
+    public void connectionsForOtherUsersComeFromThePrimary() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(replica);
+
+        try (Connection connection = routing.getConnection("sa", "")) {
+            Assert.assertEquals("primary", new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                    .queryForObject("select name from node", String.class));
+        }
+    }
+
+    private ReplicaRoutingDataSource routing(DataSource replica) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas);
+        routing.checkReplicas();
+        return routing;
+    }
+
+    private String nodeName(ReplicaRoutingDataSource routing, boolean readOnly) {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(20))");
+        jdbcTemplate.update("delete from node");
+        jdbcTemplate.update("insert into node (name) values (?)", name);
+        return dataSource;
+    }
+}
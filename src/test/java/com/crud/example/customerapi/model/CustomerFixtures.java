@@ -0,0 +1,100 @@
+package com.crud.example.customerapi.model;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class CustomerFixtures {
+
+    /*
+        Valid customers and CPFs for the tests and the benchmarks, e.g.
+        customerService.save(customer(nextCpf())). CPFs are built from a
+        sequence number with their check digits, so that they are valid
+        and distinct.
+    */
+
+    private static final AtomicInteger NEXT_SEQUENCE = new AtomicInteger();
+
+    private CustomerFixtures() {
+    }
+
+    /*
+        A customer and its address, new to the database.
+    */
+    public static Customer customer(String cpf) {
+        return customer(null, cpf);
+    }
+
+    /*
+        A customer and its address with the given ID, as if stored.
+    */
+    public static Customer customer(Long id, String cpf) {
+        Address address = new Address();
+        address.setId(id);
+        address.setStreet("Rua Jeronimo Pattaro");
+        address.setComplement("AP 31");
+        address.setNumber(71);
+        address.setNeighbourhood("Vila Santa Isabel");
+        address.setZipCode("13400111");
+        address.setCity("Campinas");
+        address.setUf("SP");
+
+        Customer customer = new Customer();
+        customer.setId(id);
+        customer.setFirstName("Joao Ricardo");
+        customer.setLastName("Da Silva");
+        customer.setEmail("jrdasilva@gmail.com");
+        customer.setCpf(cpf);
+        customer.setDateOfBirth(Date.from(
+                LocalDate.of(1989, 2, 22)
+                        .atStartOfDay(ZoneId.systemDefault())
+                        .toInstant()));
+        customer.setAddress(address);
+        address.setCustomer(customer);
+
+        return customer;
+    }
+
+    /*
+        A CPF distinct from the ones returned before in this JVM, for
+        databases created by the tests.
+    */
+    public static String nextCpf() {
+        return cpf(NEXT_SEQUENCE.incrementAndGet());
+    }
+
+    /*
+        A CPF unlikely to be taken already, for databases kept between
+        test runs.
+    */
+    public static String randomCpf() {
+        return cpf(ThreadLocalRandom.current().nextInt(1000000000));
+    }
+
+    public static String cpf(int sequence) {
+        int[] digits = new int[11];
+        String base = String.format("%09d", sequence);
+        for (int i = 0; i < 9; i++) {
+            digits[i] = base.charAt(i) - '0';
+        }
+        digits[9] = checkDigit(digits, 9);
+        digits[10] = checkDigit(digits, 10);
+
+        StringBuilder cpf = new StringBuilder();
+        for (int digit : digits) {
+            cpf.append(digit);
+        }
+        return cpf.toString();
+    }
+
+    private static int checkDigit(int[] digits, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += digits[i] * (length + 1 - i);
+        }
+        int remainder = 11 - sum % 11;
+        return remainder >= 10 ? 0 : remainder;
+    }
+}
@@ -0,0 +1,219 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.dto.CustomerSummary;
+import com.crud.example.customerapi.model.Customer;
+import com.crud.example.customerapi.model.CustomerFixtures;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+public class CustomerRepositoryTest {
+
+    /*
+        Asserts the number of SQL statements each read takes, so that
+        loading the customers' addresses never goes back to N+1 selects.
+    */
+
+    private static final String[] CPFS = {"93350016006", "52998224725", "11144477735"};
+
+    @Autowired
+    private CustomerRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        for (String cpf : CPFS) {
+            entityManager.persist(CustomerFixtures.customer(cpf));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void listingAPageOfCustomersTakesOneStatement() {
+        List<Customer> customers = repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 10));
+
+        Assert.assertEquals(CPFS.length, customers.size());
+        customers.forEach(this::assertAddressLoaded);
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findingACustomerByCPFTakesOneStatement() {
+        Optional<Customer> customer = repository.findByCpf(CPFS[1]);
+
+        Assert.assertTrue(customer.isPresent());
+        assertAddressLoaded(customer.get());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findingACustomerByIDTakesOneStatement() {
+        Long id = repository.findByCpf(CPFS[2]).map(Customer::getId).orElseThrow(IllegalStateException::new);
+        entityManager.clear();
+        statistics.clear();
+
+        Optional<Customer> customer = repository.findById(id);
+
+        Assert.assertTrue(customer.isPresent());
+        assertAddressLoaded(customer.get());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findingCustomersByIDsTakesOneStatement() {
+        List<Long> ids = Arrays.asList(
+                repository.findByCpf(CPFS[0]).map(Customer::getId).orElseThrow(IllegalStateException::new),
+                repository.findByCpf(CPFS[2]).map(Customer::getId).orElseThrow(IllegalStateException::new),
+                -1L);
+        entityManager.clear();
+        statistics.clear();
+
+        List<Customer> customers = repository.findByIdIn(ids);
+
+        Assert.assertEquals(2, customers.size());
+        customers.forEach(this::assertAddressLoaded);
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void summariesAreReadWithoutTheAddress() {
+        Optional<CustomerSummary> summary = repository.findSummaryByCpf(CPFS[1]);
+        List<CustomerSummary> page = repository.findSummaryByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2));
+
+        Assert.assertTrue(summary.isPresent());
+        Assert.assertEquals("Joao Ricardo", summary.get().getFirstName());
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals(0, statistics.getEntityLoadCount());
+        Assert.assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void streamingAllCustomersTakesOneStatement() {
+        long streamed = repository.streamAll()
+                .peek(this::assertAddressLoaded)
+                .count();
+
+        Assert.assertEquals(CPFS.length, streamed);
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void pagesFollowTheCursor() {
+        List<Customer> firstPage = repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2));
+        Long cursor = firstPage.get(1).getId();
+        List<Customer> secondPage = repository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, 2));
+
+        Assert.assertEquals(2, firstPage.size());
+        Assert.assertEquals(1, secondPage.size());
+        Assert.assertTrue(secondPage.get(0).getId() > cursor);
+    }
+
+    @Test(expected = ObjectOptimisticLockingFailureException.class)
+    public void savingAnOutdatedVersionIsRejected() {
+        Customer customer = repository.findByCpf(CPFS[0]).orElseThrow(IllegalStateException::new);
+        customer.setFirstName("Maria");
+        repository.saveAndFlush(customer);
+        entityManager.clear();
+
+        customer.setVersion(customer.getVersion() - 1);
+        repository.saveAndFlush(customer);
+    }
+
+    @Test
+    public void updatingACustomerByIDTakesOneStatement() {
+        Customer customer = repository.findByCpf(CPFS[0]).orElseThrow(IllegalStateException::new);
+        entityManager.clear();
+        statistics.clear();
+
+        Long version = repository.updateCustomer(customer.getId(), customer.getVersion(),
+                Collections.singletonMap("firstName", "Maria"));
+
+        Assert.assertEquals(Long.valueOf(customer.getVersion() + 1), version);
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Customer stored = repository.findById(customer.getId()).orElseThrow(IllegalStateException::new);
+        Assert.assertEquals("Maria", stored.getFirstName());
+        Assert.assertEquals(version, stored.getVersion());
+    }
+
+    @Test
+    public void updatingAnOutdatedVersionUpdatesNothing() {
+        Customer customer = repository.findByCpf(CPFS[0]).orElseThrow(IllegalStateException::new);
+
+        Long version = repository.updateCustomer(customer.getId(), customer.getVersion() - 1,
+                Collections.singletonMap("firstName", "Maria"));
+
+        Assert.assertNull(version);
+    }
+
+    @Test
+    public void updatingAnAddressByCustomerIDTakesOneStatement() {
+        Customer customer = repository.findByCpf(CPFS[1]).orElseThrow(IllegalStateException::new);
+        entityManager.clear();
+        statistics.clear();
+
+        int updated = repository.updateAddress(customer.getId(), Collections.singletonMap("complement", null));
+
+        Assert.assertEquals(1, updated);
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        entityManager.clear();
+        Assert.assertNull(repository.findById(customer.getId()).map(Customer::getAddress)
+                .orElseThrow(IllegalStateException::new).getComplement());
+    }
+
+    @Test
+    public void deletingACustomerByIDTakesTwoStatements() {
+        Long id = repository.findByCpf(CPFS[2]).map(Customer::getId).orElseThrow(IllegalStateException::new);
+        entityManager.clear();
+        statistics.clear();
+
+        repository.deleteAddressByCustomerId(id);
+        int deleted = repository.deleteCustomerById(id);
+
+        Assert.assertEquals(1, deleted);
+        Assert.assertEquals(2, statistics.getPrepareStatementCount());
+        Assert.assertFalse(repository.findById(id).isPresent());
+    }
+
+    @Test
+    public void deletingANonExistingCustomerDeletesNothing() {
+        Assert.assertEquals(0, repository.deleteAddressByCustomerId(-1L));
+        Assert.assertEquals(0, repository.deleteCustomerById(-1L));
+    }
+
+    private void assertAddressLoaded(Customer customer) {
+        PersistenceUnitUtil persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        Assert.assertTrue(persistenceUnitUtil.isLoaded(customer, "address"));
+        Assert.assertEquals("Campinas", customer.getAddress().getCity());
+    }
+}
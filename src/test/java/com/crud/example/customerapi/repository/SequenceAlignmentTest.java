@@ -0,0 +1,74 @@
+package com.crud.example.customerapi.repository;
+
+import com.crud.example.customerapi.TestPostgres;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class SequenceAlignmentTest {
+
+    /*
+        Against PostgreSQL (see TestPostgres), on a table and a sequence
+        of its own, created the way the schema update creates them.
+    */
+
+    private JdbcTemplate jdbcTemplate;
+    private SequenceAlignment sequenceAlignment;
+
+    @BeforeClass
+    public static void requirePostgres() {
+        TestPostgres.require();
+    }
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource(TestPostgres.url(), TestPostgres.username(), TestPostgres.password()));
+        jdbcTemplate.execute("create table aligned (id bigint primary key)");
+        jdbcTemplate.execute("create sequence aligned_seq start 1 increment 50");
+        sequenceAlignment = new SequenceAlignment(jdbcTemplate, null);
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("drop table aligned");
+        jdbcTemplate.execute("drop sequence aligned_seq");
+    }
+
+    @Test
+    public void aSequenceBehindTheStoredIdsIsMovedPastThem() {
+        jdbcTemplate.execute("insert into aligned (id) values (1), (120)");
+
+        sequenceAlignment.align("aligned_seq", "aligned");
+        sequenceAlignment.align("aligned_seq", "aligned");
+
+        // the block of IDs handed to Hibernate ends with the value returned
+        Assert.assertEquals(Long.valueOf(170), nextValue());
+    }
+
+    @Test
+    public void aSequenceAheadOfTheStoredIdsIsLeftAlone() {
+        Assert.assertEquals(Long.valueOf(1), nextValue());
+        Assert.assertEquals(Long.valueOf(51), nextValue());
+        jdbcTemplate.execute("insert into aligned (id) values (1), (2)");
+
+        sequenceAlignment.align("aligned_seq", "aligned");
+
+        Assert.assertEquals(Long.valueOf(101), nextValue());
+    }
+
+    @Test
+    public void aSequenceOfAnEmptyTableIsLeftAlone() {
+        sequenceAlignment.align("aligned_seq", "aligned");
+
+        Assert.assertEquals(Long.valueOf(1), nextValue());
+    }
+
+    private Long nextValue() {
+        return jdbcTemplate.queryForObject("select nextval('aligned_seq')", Long.class);
+    }
+}
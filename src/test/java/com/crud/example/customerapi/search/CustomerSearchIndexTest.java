@@ -0,0 +1,106 @@
+package com.crud.example.customerapi.search;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class CustomerSearchIndexTest {
+
+    private CustomerSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new CustomerSearchIndex();
+        index.put(1, "João", "da Silva", "joao.silva@example.com", "São Paulo", "SP");
+        index.put(2, "Maria", "Silveira", "maria@example.com", "Rio de Janeiro", "RJ");
+        index.put(3, "Joana", "Souza", "joana.souza@example.com", "Campinas", "SP");
+    }
+
+    @Test
+    public void matchesWholeWordsIgnoringCaseAndAccents() {
+        Assert.assertArrayEquals(new long[]{1}, index.search("JOAO", 10));
+        Assert.assertArrayEquals(new long[]{1}, index.search("sao paulo", 10));
+    }
+
+    @Test
+    public void matchesPrefixesAndPartsOfWords() {
+        Assert.assertArrayEquals(new long[]{1, 2}, index.search("silv", 10));
+        Assert.assertArrayEquals(new long[]{3}, index.search("pinas", 10));
+        // too short to match inside words
+        Assert.assertArrayEquals(new long[0], index.search("oa", 10));
+    }
+
+    @Test
+    public void matchesEveryWordOfTheQuery() {
+        Assert.assertArrayEquals(new long[]{3}, index.search("jo sp souza", 10));
+        Assert.assertArrayEquals(new long[0], index.search("maria sp", 10));
+    }
+
+    @Test
+    public void ranksExactWordsAndNamesFirst() {
+        index.put(4, "Ana", "Dossantos", "ana@example.com", "Goiânia", "GO");
+        index.put(5, "Ana", "Lima", "ana.lima@example.com", "Santos", "SP");
+        index.put(6, "Ana", "Costa", "santos.ana@example.com", "Recife", "PE");
+        index.put(7, "Ana", "Santos", "ana.santos@example.com", "Natal", "RN");
+
+        Assert.assertArrayEquals(new long[]{7, 6, 4, 5}, index.search("ana santos", 10));
+        Assert.assertArrayEquals(new long[]{7, 6}, index.search("ana santos", 2));
+    }
+
+    @Test
+    public void reindexesChangedAndRemovedCustomers() {
+        index.put(1, "João", "Pereira", "joao.pereira@example.com", "Santos", "SP");
+        index.remove(2);
+
+        Assert.assertArrayEquals(new long[0], index.search("silva", 10));
+        Assert.assertArrayEquals(new long[]{1}, index.search("pereira", 10));
+        Assert.assertArrayEquals(new long[0], index.search("maria", 10));
+        Assert.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void matchesPartsOfWordsOnlyWhileTheyAreIndexed() {
+        Assert.assertArrayEquals(new long[]{2}, index.search("ilveir", 10));
+
+        index.remove(2);
+        index.put(1, "João", "Oliveira", "joao.oliveira@example.com", "São Paulo", "SP");
+
+        Assert.assertArrayEquals(new long[0], index.search("ilveir", 10));
+        Assert.assertArrayEquals(new long[]{1}, index.search("liveir", 10));
+        Assert.assertArrayEquals(new long[0], index.search("ilva", 10));
+    }
+
+    @Test
+    public void keepsMatchingAsCustomersComeAndGo() {
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        Map<Long, Integer> cities = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            long id = 1 + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                index.remove(id);
+                cities.remove(id);
+            } else {
+                int city = random.nextInt(10);
+                index.put(id, "Customer", "Number " + id, null, "City" + city, null);
+                cities.put(id, city);
+            }
+        }
+
+        Assert.assertEquals(cities.size(), index.size());
+        for (int city = 0; city < 10; city++) {
+            long[] found = index.search("city" + city, Integer.MAX_VALUE);
+            final int expectedCity = city;
+            long expected = cities.values().stream().filter(value -> value == expectedCity).count();
+            Assert.assertEquals(expected, found.length);
+            for (long id : found) {
+                Assert.assertEquals(Integer.valueOf(city), cities.get(id));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.crud.example.customerapi.security;
+
+import com.crud.example.customerapi.cache.CacheInvalidationListener;
+import com.crud.example.customerapi.cache.CacheInvalidationPublisher;
+import com.crud.example.customerapi.model.RevokedToken;
+import com.crud.example.customerapi.repository.RevokedTokenRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class TokenServiceTest {
+
+    private static final byte[] SECRET = "test-secret-of-at-least-32-characters".getBytes(StandardCharsets.UTF_8);
+
+    private TokenService tokenService;
+    private Authentication admin;
+
+    @Before
+    public void setUp() {
+        tokenService = new TokenService(SECRET, Duration.ofHours(1), 100);
+        admin = new UsernamePasswordAuthenticationToken("admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+    }
+
+    @Test
+    public void authenticatesTheUserOfAnIssuedToken() {
+        String token = tokenService.issue(admin).getToken();
+
+        TokenAuthentication authentication = tokenService.authenticate(token);
+
+        Assert.assertEquals("admin", authentication.getName());
+        Assert.assertEquals(admin.getAuthorities(), authentication.getAuthorities());
+        Assert.assertSame(authentication, tokenService.authenticate(token));
+        // verified again by a node that has not cached it
+        Assert.assertEquals("admin", new TokenService(SECRET, Duration.ofHours(1), 0).authenticate(token).getName());
+    }
+
+    @Test
+    public void rejectsTokensNotSignedWithTheSecret() {
+        String token = tokenService.issue(admin).getToken();
+        String payload = token.substring(0, token.indexOf('.'));
+        String signature = token.substring(token.indexOf('.') + 1);
+
+        Assert.assertNull(new TokenService("another-secret-of-at-least-32-characters".getBytes(StandardCharsets.UTF_8),
+                Duration.ofHours(1), 100).authenticate(token));
+        Assert.assertNull(tokenService.authenticate(payload + "." + signature.substring(1)));
+        Assert.assertNull(tokenService.authenticate(payload.substring(1) + "." + signature));
+        Assert.assertNull(tokenService.authenticate("not a token"));
+    }
+
+    @Test
+    public void rejectsExpiredTokens() {
+        TokenService expiring = new TokenService(SECRET, Duration.ZERO, 100);
+
+        Assert.assertNull(expiring.authenticate(expiring.issue(admin).getToken()));
+    }
+
+    @Test
+    public void rejectsRevokedTokens() {
+        String token = tokenService.issue(admin).getToken();
+        String another = tokenService.issue(admin).getToken();
+
+        tokenService.revoke(tokenService.authenticate(token));
+
+        Assert.assertNull(tokenService.authenticate(token));
+        Assert.assertNotNull(tokenService.authenticate(another));
+    }
+
+    @Test
+    public void rejectsTokensRevokedOnAnotherNode() {
+        List<RevokedToken> stored = new ArrayList<>();
+        RevokedTokenRepository repository = Mockito.mock(RevokedTokenRepository.class);
+        Mockito.when(repository.save(ArgumentMatchers.any(RevokedToken.class))).thenAnswer(invocation -> {
+            stored.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        Mockito.when(repository.findRevokedSince(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> stored.stream()
+                        .filter(revoked -> !revoked.getRevokedAt().before(invocation.getArgument(0)))
+                        .map(RevokedToken::getTokenId)
+                        .collect(Collectors.toList()));
+        TokenService otherNode = new TokenService(SECRET, Duration.ofHours(1), 100);
+        // without the notifications, as with the cache invalidation turned off
+        CacheInvalidationPublisher publisher = Mockito.mock(CacheInvalidationPublisher.class);
+        TokenRevocations revocations = new TokenRevocations(repository, tokenService, publisher, Optional.empty(),
+                Duration.ofHours(1));
+        TokenRevocations otherRevocations = new TokenRevocations(repository, otherNode, publisher, Optional.empty(),
+                Duration.ofHours(1));
+        otherRevocations.poll();
+        String token = tokenService.issue(admin).getToken();
+        Assert.assertNotNull(otherNode.authenticate(token));
+
+        revocations.revoke(tokenService.authenticate(token));
+
+        Assert.assertNull(tokenService.authenticate(token));
+        otherRevocations.poll();
+        Assert.assertNull(otherNode.authenticate(token));
+        // and on a node starting later
+        TokenService restartedNode = new TokenService(SECRET, Duration.ofHours(1), 100);
+        new TokenRevocations(repository, restartedNode, publisher, Optional.empty(), Duration.ofHours(1)).poll();
+        Assert.assertNull(restartedNode.authenticate(token));
+    }
+
+    @Test
+    public void rejectsTokensRevokedOnAnotherNodeOnceNotified() {
+        RevokedTokenRepository repository = Mockito.mock(RevokedTokenRepository.class);
+        CacheInvalidationListener listener = Mockito.mock(CacheInvalidationListener.class);
+        TokenService otherNode = new TokenService(SECRET, Duration.ofHours(1), 100);
+        new TokenRevocations(repository, otherNode, Mockito.mock(CacheInvalidationPublisher.class),
+                Optional.of(listener), Duration.ofHours(1));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> subscription = ArgumentCaptor.forClass(Consumer.class);
+        Mockito.verify(listener).subscribe(ArgumentMatchers.eq(TokenRevocations.CHANNEL), subscription.capture());
+        CacheInvalidationPublisher publisher = Mockito.mock(CacheInvalidationPublisher.class);
+        Mockito.doAnswer(invocation -> {
+            subscription.getValue().accept(invocation.getArgument(1));
+            return null;
+        }).when(publisher).send(ArgumentMatchers.eq(TokenRevocations.CHANNEL), ArgumentMatchers.anyString());
+        TokenRevocations revocations = new TokenRevocations(repository, tokenService, publisher, Optional.empty(),
+                Duration.ofHours(1));
+        String token = tokenService.issue(admin).getToken();
+        Assert.assertNotNull(otherNode.authenticate(token));
+
+        revocations.revoke(tokenService.authenticate(token));
+
+        Assert.assertNull(otherNode.authenticate(token));
+        Mockito.verify(repository, Mockito.never()).findRevokedSince(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+}
@@ -0,0 +1,88 @@
+package com.crud.example.customerapi.service;
+
+import com.crud.example.customerapi.dto.BatchResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+public class CustomerImportServiceTest {
+
+    private CustomerService customerService;
+    private ObjectMapper objectMapper;
+    private CustomerImportService importService;
+
+    @Before
+    public void setUp() {
+        customerService = Mockito.mock(CustomerService.class);
+        Mockito.when(customerService.findExistingCpfs(ArgumentMatchers.anySet())).thenReturn(Collections.emptySet());
+        objectMapper = new ObjectMapper();
+        importService = new CustomerImportService(customerService, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+    }
+
+    @Test
+    public void aMalformedItemStopsTheImportAfterStoringTheItemsBeforeIt() throws IOException {
+        BatchResult result = importService.importCustomers(elements(
+                "[" + customer("52998224725") + "," + customer("93350016006") + "," + customer("11144477735") + ", {"));
+
+        Mockito.verify(customerService, Mockito.times(2)).saveAll(ArgumentMatchers.anyList());
+        Assert.assertEquals(3, result.getCreated());
+        Assert.assertTrue(result.getError(), result.getError().startsWith("Malformed request body at item 3"));
+    }
+
+    @Test
+    public void aStorageFailurePropagatesWithoutStoringTheChunkAgain() throws IOException {
+        Mockito.when(customerService.saveAll(ArgumentMatchers.anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        try {
+            importService.importCustomers(elements(
+                    "[" + customer("52998224725") + "," + customer("93350016006") + "," + customer("11144477735") + "]"));
+            Assert.fail("The storage failure was reported as a malformed body.");
+        } catch (DataAccessResourceFailureException e) {
+            Mockito.verify(customerService, Mockito.times(1)).saveAll(ArgumentMatchers.anyList());
+        }
+    }
+
+    @Test
+    public void anInterruptedImportStopsBeforeItsNextChunk() throws IOException {
+        Mockito.when(customerService.saveAll(ArgumentMatchers.anyList())).thenAnswer(invocation -> {
+            // the request timing out while the first chunk is stored
+            Thread.currentThread().interrupt();
+            return invocation.getArgument(0);
+        });
+
+        try {
+            BatchResult result = importService.importCustomers(elements(
+                    "[" + customer("52998224725") + "," + customer("93350016006") + "," + customer("11144477735") + "]"));
+
+            Mockito.verify(customerService, Mockito.times(1)).saveAll(ArgumentMatchers.anyList());
+            Assert.assertTrue(result.getError(), result.getError().startsWith("Import interrupted before item 2"));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private Iterator<JsonNode> elements(String body) throws IOException {
+        return objectMapper.readerFor(JsonNode.class).readValues(body);
+    }
+
+    private static String customer(String cpf) {
+        return "{\"firstName\":\"Joao Ricardo\",\"lastName\":\"Da Silva\",\"email\":\"jrdasilva@gmail.com\","
+                + "\"cpf\":\"" + cpf + "\",\"dateOfBirth\":\"22-02-1989\",\"address\":{\"street\":\"Rua Jeronimo Pattaro\","
+                + "\"number\":71,\"zipCode\":\"13400111\",\"neighbourhood\":\"Vila Santa Isabel\",\"city\":\"Campinas\","
+                + "\"uf\":\"SP\"}}";
+    }
+}
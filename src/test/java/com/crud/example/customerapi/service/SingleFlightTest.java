@@ -0,0 +1,127 @@
+package com.crud.example.customerapi.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private MeterRegistry registry;
+    private SingleFlight<Long, String> singleFlight;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("test", registry);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "customer 1";
+            })));
+        }
+        awaitCount("coalesced", CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Assert.assertEquals("customer 1", result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, count("loaded"), 0);
+
+        // done loading, the next caller loads again
+        Assert.assertEquals("customer 1 again", singleFlight.load(1L, () -> "customer 1 again"));
+        Assert.assertEquals(2, count("loaded"), 0);
+    }
+
+    @Test
+    public void concurrentCallersShareTheFailure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+                await(release);
+                throw new IllegalStateException("database down");
+            })));
+        }
+        awaitCount("coalesced", CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @Test
+    public void otherKeysDoNotWait() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> blocked = executor.submit(() -> singleFlight.load(1L, () -> {
+            await(release);
+            return "customer 1";
+        }));
+        awaitCount("loaded", 1);
+
+        Future<String> other = executor.submit(() -> singleFlight.load(2L, () -> "customer 2"));
+
+        Assert.assertEquals("customer 2", other.get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(blocked.isDone());
+        release.countDown();
+        Assert.assertEquals("customer 1", blocked.get(5, TimeUnit.SECONDS));
+    }
+
+    private double count(String outcome) {
+        return registry.get(SingleFlight.LOADS_COUNTER).tag("lookup", "test").tag("outcome", outcome).counter().count();
+    }
+
+    private void awaitCount(String outcome, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(outcome) < expected) {
+            Assert.assertTrue(outcome + " calls: " + count(outcome), System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
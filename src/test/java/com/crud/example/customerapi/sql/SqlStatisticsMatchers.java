@@ -0,0 +1,41 @@
+package com.crud.example.customerapi.sql;
+
+import org.junit.Assert;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+public final class SqlStatisticsMatchers {
+
+    /*
+        MockMvc matchers on the number of SQL statements a request ran,
+        as recorded by the SqlStatisticsFilter, e.g.
+        mockMvc.perform(get("/customers/1")).andExpect(statements(1))
+    */
+
+    private SqlStatisticsMatchers() {
+    }
+
+    public static ResultMatcher statements(int expected) {
+        return result -> Assert.assertEquals("SQL statements of " + describe(result) + queriesOf(result),
+                expected, statisticsOf(result).getStatements());
+    }
+
+    public static ResultMatcher statementsAtMost(int maximum) {
+        return result -> Assert.assertTrue("SQL statements of " + describe(result) + " over " + maximum + queriesOf(result),
+                statisticsOf(result).getStatements() <= maximum);
+    }
+
+    private static SqlStatistics statisticsOf(MvcResult result) {
+        SqlStatistics statistics = (SqlStatistics) result.getRequest().getAttribute(SqlStatistics.REQUEST_ATTRIBUTE);
+        Assert.assertNotNull("No SQL statistics recorded for " + describe(result), statistics);
+        return statistics;
+    }
+
+    private static String describe(MvcResult result) {
+        return result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+    }
+
+    private static String queriesOf(MvcResult result) {
+        return ": " + statisticsOf(result).getQueries();
+    }
+}
@@ -0,0 +1,114 @@
+package com.crud.example.customerapi.stats;
+
+import com.crud.example.customerapi.dto.CustomerStatistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CustomerCountsTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2020, 6, 15);
+
+    private CustomerCounts counts;
+
+    @Before
+    public void setUp() {
+        counts = new CustomerCounts();
+        counts.put(1, "SP", "Campinas", LocalDate.of(1989, 2, 22));
+        counts.put(2, "SP", "São Paulo", LocalDate.of(2002, 6, 15));
+        counts.put(3, "SP", "Campinas", LocalDate.of(2002, 6, 16));
+        counts.put(4, "RJ", "Niterói", LocalDate.of(1950, 1, 1));
+    }
+
+    @Test
+    public void countsCustomersByUfAndCity() {
+        CustomerStatistics statistics = counts.statistics(TODAY);
+
+        Assert.assertEquals(4, statistics.getTotal());
+        Assert.assertEquals(map("RJ", 1, "SP", 3), statistics.getByUf());
+        Assert.assertEquals(map("Campinas", 2, "São Paulo", 1), statistics.getByCity().get("SP"));
+        Assert.assertEquals(map("Niterói", 1), statistics.getByCity().get("RJ"));
+    }
+
+    @Test
+    public void countsCustomersByAgeBracketOnTheGivenDay() {
+        // customer 2 turns 18 today, customer 3 tomorrow
+        Assert.assertEquals(brackets(1, 1, 1, 0, 0, 0, 1), counts.statistics(TODAY).getByAgeBracket());
+        Assert.assertEquals(brackets(0, 2, 1, 0, 0, 0, 1), counts.statistics(TODAY.plusDays(1)).getByAgeBracket());
+    }
+
+    @Test
+    public void movesChangedCustomersAndDropsRemovedOnes() {
+        CustomerStatistics before = counts.statistics(TODAY);
+
+        counts.put(1, "RJ", "Niterói", LocalDate.of(1989, 2, 22));
+        counts.remove(2);
+        counts.remove(42);
+
+        CustomerStatistics statistics = counts.statistics(TODAY);
+        Assert.assertNotSame(before, statistics);
+        Assert.assertEquals(3, statistics.getTotal());
+        Assert.assertEquals(map("RJ", 2, "SP", 1), statistics.getByUf());
+        Assert.assertEquals(map("Campinas", 1), statistics.getByCity().get("SP"));
+        Assert.assertEquals(brackets(1, 0, 1, 0, 0, 0, 1), statistics.getByAgeBracket());
+        Assert.assertSame(statistics, counts.statistics(TODAY));
+    }
+
+    @Test
+    public void countsCustomersWithoutAddressOrDateOfBirthInTheTotalOnly() {
+        counts = new CustomerCounts();
+        counts.put(1, null, null, null);
+
+        CustomerStatistics statistics = counts.statistics(TODAY);
+
+        Assert.assertEquals(1, statistics.getTotal());
+        Assert.assertEquals(Collections.emptyMap(), statistics.getByUf());
+        Assert.assertEquals(brackets(0, 0, 0, 0, 0, 0, 0), statistics.getByAgeBracket());
+    }
+
+    @Test
+    public void describesTheTotalsThatDriftedFromARecount() {
+        CustomerStatistics kept = counts.statistics(TODAY);
+        CustomerCounts recounted = new CustomerCounts();
+        recounted.put(1, "SP", "Campinas", LocalDate.of(1989, 2, 22));
+        recounted.put(2, "SP", "São Paulo", LocalDate.of(2002, 6, 15));
+        recounted.put(3, "MG", "Uberaba", LocalDate.of(2002, 6, 16));
+
+        Assert.assertEquals("total 4 -> 3, uf MG 0 -> 1, uf RJ 1 -> 0, uf SP 3 -> 2, age 65+ 1 -> 0",
+                CustomerStatisticsTracker.differences(kept, recounted.statistics(TODAY)));
+    }
+
+    @Test
+    public void countsACustomerAsOtherCountsDo() {
+        CustomerCounts recounted = new CustomerCounts();
+        recounted.put(1, "MG", "Uberaba", LocalDate.of(1989, 2, 22));
+        recounted.put(5, null, null, LocalDate.of(1950, 1, 1));
+
+        counts.putAs(recounted, 1);
+        counts.putAs(recounted, 2);
+        counts.putAs(recounted, 5);
+
+        CustomerStatistics statistics = counts.statistics(TODAY);
+        Assert.assertEquals(4, statistics.getTotal());
+        Assert.assertEquals(map("MG", 1, "RJ", 1, "SP", 1), statistics.getByUf());
+        Assert.assertEquals(brackets(1, 0, 1, 0, 0, 0, 2), statistics.getByAgeBracket());
+    }
+
+    private static Map<String, Integer> map(Object... keysAndValues) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], (Integer) keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static Map<String, Integer> brackets(int... counts) {
+        return map("0-17", counts[0], "18-24", counts[1], "25-34", counts[2], "35-44", counts[3],
+                "45-54", counts[4], "55-64", counts[5], "65+", counts[6]);
+    }
+}